@@ -0,0 +1,62 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.projectg.geyserupdater.common.logger.JavaUtilUpdaterLogger;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Shared setup of the benchmarks.
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * The updater logs through a static logger, which a plugin sets on enable.
+     */
+    static void initLogger() {
+        if (UpdaterLogger.getLogger() == null) {
+            new JavaUtilUpdaterLogger(Logger.getLogger("GeyserUpdater"));
+        }
+    }
+
+    /**
+     * Write a file of random bytes, which is as incompressible as a jar.
+     *
+     * @param file the file to write
+     * @param megabytes the size in MB
+     */
+    static void writeRandom(Path file, int megabytes) throws IOException {
+        Random random = new Random(megabytes);
+        byte[] chunk = new byte[1024 * 1024];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(chunk);
+                output.write(chunk);
+            }
+        }
+    }
+
+    /**
+     * Delete a directory and everything in it.
+     */
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the response of the Geyser download API, as {@code GeyserDownloadApi} does after every check that is not
+ * answered from the cache. A build usually lists a few changes, a build after a long pause can list many.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointResponseParseBenchmark {
+    private static final String[] PLATFORMS = {"bungeecord", "fabric", "spigot", "sponge", "standalone", "velocity"};
+
+    @Param({"1", "10", "100"})
+    public int changes;
+
+    private final Gson gson = new Gson();
+    private String body;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"project_id\":\"geyser\",\"project_name\":\"Geyser\",\"version\":\"2.2.0\",\"build\":1234,")
+                .append("\"time\":\"2023-10-01T12:00:00.000Z\",\"channel\":\"default\",\"promoted\":false,\"changes\":[");
+        for (int i = 0; i < changes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"commit\":\"").append("%040x".formatted(i)).append("\",\"summary\":\"Fix an issue with forms (#")
+                    .append(4000 + i).append(")\",\"message\":\"Fix an issue with forms (#").append(4000 + i)
+                    .append(")\\n\\nCo-authored-by: Contributor <contributor@example.com>\"}");
+        }
+        json.append("],\"downloads\":{");
+        for (int i = 0; i < PLATFORMS.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(PLATFORMS[i]).append("\":{\"name\":\"Geyser-").append(PLATFORMS[i])
+                    .append(".jar\",\"sha256\":\"").append("%064x".formatted(i)).append("\"}");
+        }
+        json.append("}}");
+        body = json.toString();
+    }
+
+    /**
+     * What {@code GeyserDownloadApi} does now: read the body into a string, then bind it.
+     */
+    @Benchmark
+    public EndpointResponse fromString() {
+        return gson.fromJson(body, EndpointResponse.class);
+    }
+
+    /**
+     * Bind straight from a reader, as when parsing the response stream without buffering the body.
+     */
+    @Benchmark
+    public EndpointResponse fromReader() {
+        return gson.fromJson(new StringReader(body), EndpointResponse.class);
+    }
+
+    /**
+     * Parse into a tree first, then bind the tree.
+     */
+    @Benchmark
+    public EndpointResponse viaTree() {
+        JsonElement tree = JsonParser.parseString(body);
+        return gson.fromJson(tree, EndpointResponse.class);
+    }
+}
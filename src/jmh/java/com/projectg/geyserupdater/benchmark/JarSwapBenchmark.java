@@ -0,0 +1,116 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.projectg.geyserupdater.common.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Putting a downloaded jar in place of the installed one, on real files in a temporary directory.
+ * {@code JarSwapper} itself keeps its marker in the plugin folder, so its copy and rename are reproduced here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarSwapBenchmark {
+
+    @Param({"5", "50"})
+    public int megabytes;
+
+    private Path directory;
+    private Path downloaded;
+    private Path target;
+    private Path temp;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFiles.initLogger();
+        directory = Files.createTempDirectory("geyserupdater-swap");
+        downloaded = directory.resolve("download.jar");
+        target = directory.resolve("Geyser-Velocity.jar");
+        temp = directory.resolve("Geyser-Velocity.jar.new.tmp");
+        BenchmarkFiles.writeRandom(downloaded, megabytes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /**
+     * What {@code JarSwapper} does now: copy next to the target, then a synced atomic rename over it.
+     */
+    @Benchmark
+    public void copyThenRename() throws IOException {
+        Files.copy(downloaded, temp, StandardCopyOption.REPLACE_EXISTING);
+        FileUtils.stageFile(temp, target);
+    }
+
+    /**
+     * A copy straight over the target, which leaves a half written jar if it is interrupted.
+     */
+    @Benchmark
+    public void filesCopy() throws IOException {
+        Files.copy(downloaded, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The stream copy loop of the old {@code moveGeyserJar}.
+     */
+    @Benchmark
+    public void streamCopy() throws IOException {
+        byte[] buffer = new byte[1024];
+        try (InputStream input = Files.newInputStream(downloaded); OutputStream output = Files.newOutputStream(target)) {
+            int length;
+            while ((length = input.read(buffer)) > 0) {
+                output.write(buffer, 0, length);
+            }
+        }
+    }
+
+    /**
+     * A channel transfer, which the kernel can do without copying through the heap.
+     */
+    @Benchmark
+    public void transferTo() throws IOException {
+        try (FileChannel source = FileChannel.open(downloaded, StandardOpenOption.READ);
+             FileChannel destination = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, destination);
+            }
+        }
+    }
+
+    /**
+     * A hardlink, as used for the backup of the replaced jar. It shares its data with the download.
+     */
+    @Benchmark
+    public void hardlink() throws IOException {
+        FileUtils.linkOrCopy(downloaded, target);
+    }
+}
@@ -0,0 +1,158 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.util.CancellationToken;
+import com.projectg.geyserupdater.common.util.FileUtils;
+import com.projectg.geyserupdater.common.util.HttpTransport;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Downloading a build from a local stub server that adds latency before every response and limits the throughput
+ * of each connection, like a distant download server. One segment is the resumable single stream, which hashes while
+ * it downloads; more segments add a HEAD request and hash the file after it is written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentedDownloadBenchmark {
+    private static final int SIZE_MEGABYTES = 8;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * The throughput of a single connection, 16 MB/s.
+     */
+    private static final long CHUNK_NANOS = TimeUnit.SECONDS.toNanos(1) * CHUNK_SIZE / (16 * 1024 * 1024);
+
+    @Param({"1", "4"})
+    public int segments;
+
+    @Param({"0", "50"})
+    public int latencyMillis;
+
+    private Path directory;
+    private Path output;
+    private byte[] content;
+    private String sha256;
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFiles.initLogger();
+        directory = Files.createTempDirectory("geyserupdater-segments");
+        Path source = directory.resolve("source.jar");
+        BenchmarkFiles.writeRandom(source, SIZE_MEGABYTES);
+        content = Files.readAllBytes(source);
+        sha256 = FileUtils.sha256(source);
+        output = directory.resolve("Geyser-Spigot.jar");
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        url = baseUrl + "/Geyser-Spigot.jar";
+
+        HttpTransport.setShared(new HttpTransport(baseUrl, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(600)));
+        UpdaterConfig.setConfig(new UpdaterConfig() {
+            @Override
+            public boolean getBoolean(String key, boolean def) {
+                return def;
+            }
+
+            @Override
+            public long getLong(String key, long def) {
+                return switch (key) {
+                    case "Download-Segments" -> segments;
+                    case "Download-Min-Segment-Size" -> 256;
+                    default -> def;
+                };
+            }
+
+            @Override
+            public String getString(String key, String def) {
+                return def;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Path download() throws IOException {
+        Files.deleteIfExists(output);
+        FileUtils.downloadFile(url, output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE);
+        return output;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            int first = 0;
+            int last = content.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", 2);
+                first = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    last = Math.min(last, Integer.parseInt(bounds[1]));
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes %d-%d/%d".formatted(first, last, content.length));
+            }
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"" + sha256 + "\"");
+            int length = last + 1 - first;
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, length);
+            OutputStream body = exchange.getResponseBody();
+            for (int position = first; position <= last; position += CHUNK_SIZE) {
+                body.write(content, position, Math.min(CHUNK_SIZE, last + 1 - position));
+                body.flush();
+                LockSupport.parkNanos(CHUNK_NANOS);
+            }
+        } catch (IOException e) {
+            // The client gave up on the response
+        }
+    }
+}
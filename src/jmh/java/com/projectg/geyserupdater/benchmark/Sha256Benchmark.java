@@ -0,0 +1,115 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.projectg.geyserupdater.common.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a jar on disk, as done to verify a download, to store it in the artifact store and to prepare a swap.
+ * Geyser jars are 5 to 50 MB depending on the platform. The file is in the page cache after the first iteration,
+ * so this measures the digest and the copying into it rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Sha256Benchmark {
+
+    @Param({"5", "20", "50"})
+    public int megabytes;
+
+    private Path directory;
+    private Path jar;
+    private ByteBuffer directBuffer;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFiles.initLogger();
+        directory = Files.createTempDirectory("geyserupdater-sha256");
+        jar = directory.resolve("Geyser.jar");
+        BenchmarkFiles.writeRandom(jar, megabytes);
+        directBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /**
+     * What the updater does now: a file channel read into a 64 KB heap buffer.
+     */
+    @Benchmark
+    public String fileUtils() throws IOException {
+        return FileUtils.sha256(jar);
+    }
+
+    /**
+     * An input stream read into an 8 KB array, like the old download loop.
+     */
+    @Benchmark
+    public String inputStream() throws IOException {
+        MessageDigest digest = FileUtils.newSha256Digest();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(jar)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return FileUtils.toHex(digest.digest());
+    }
+
+    /**
+     * A file channel read into a 1 MB direct buffer, which saves the copy from native memory into the heap.
+     */
+    @Benchmark
+    public String directBuffer() throws IOException {
+        MessageDigest digest = FileUtils.newSha256Digest();
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            directBuffer.clear();
+            while (channel.read(directBuffer) != -1) {
+                directBuffer.flip();
+                digest.update(directBuffer);
+                directBuffer.clear();
+            }
+        }
+        return FileUtils.toHex(digest.digest());
+    }
+
+    /**
+     * The whole file mapped into memory.
+     */
+    @Benchmark
+    public String mapped() throws IOException {
+        MessageDigest digest = FileUtils.newSha256Digest();
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            digest.update(mapped);
+        }
+        return FileUtils.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,78 @@
+package com.projectg.geyserupdater.benchmark;
+
+import com.projectg.geyserupdater.common.util.StagedArtifacts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking whether a new Geyser jar is staged, which is done on every player join and by the periodic reminder.
+ * Several threads check at once, like joins on a busy proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class StagedFileCheckBenchmark {
+    private Path directory;
+    private Path staged;
+    private File stagedFile;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFiles.initLogger();
+        directory = Files.createTempDirectory("geyserupdater-staged");
+        staged = directory.resolve("Geyser-Velocity.jar");
+        BenchmarkFiles.writeRandom(staged, 1);
+        stagedFile = staged.toFile();
+        StagedArtifacts.watch(staged);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        StagedArtifacts.close();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /**
+     * What the updater does now: a read of the state kept up to date by the watch service.
+     */
+    @Benchmark
+    public boolean stagedArtifacts() {
+        return StagedArtifacts.isStaged(staged);
+    }
+
+    /**
+     * A stat of the file on every check.
+     */
+    @Benchmark
+    public boolean filesIsRegularFile() {
+        return Files.isRegularFile(staged);
+    }
+
+    /**
+     * The {@link File} check of the old {@code FileUtils.checkFile}.
+     */
+    @Benchmark
+    public boolean fileExists() {
+        return stagedFile.exists();
+    }
+}
@@ -1,24 +1,27 @@
 package com.projectg.geyserupdater.bungee;
 
 import com.projectg.geyserupdater.bungee.command.GeyserUpdateCommand;
+import com.projectg.geyserupdater.bungee.config.BungeeUpdaterConfig;
 import com.projectg.geyserupdater.bungee.listeners.BungeeJoinListener;
-import com.projectg.geyserupdater.bungee.util.GeyserBungeeDownloader;
+import com.projectg.geyserupdater.bungee.util.BungeeUpdateAdapter;
 import com.projectg.geyserupdater.bungee.util.bstats.Metrics;
+import com.projectg.geyserupdater.common.UpdateService;
 import com.projectg.geyserupdater.common.logger.JavaUtilUpdaterLogger;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
-import com.projectg.geyserupdater.common.util.FileUtils;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.metrics.PrometheusExporter;
+import com.projectg.geyserupdater.common.metrics.UpdaterJmx;
+import com.projectg.geyserupdater.common.util.Bandwidth;
+import com.projectg.geyserupdater.common.util.JarSwapper;
 import com.projectg.geyserupdater.common.util.ScriptCreator;
+import com.projectg.geyserupdater.common.util.ServerPlatform;
 
 import com.projectg.geyserupdater.common.util.SpigotResourceUpdateChecker;
+import com.projectg.geyserupdater.common.util.StagedArtifacts;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.config.Configuration;
 import net.md_5.bungee.config.ConfigurationProvider;
 import net.md_5.bungee.config.YamlConfiguration;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,6 +33,7 @@ public final class BungeeUpdater extends Plugin {
     private static BungeeUpdater plugin;
     private Configuration configuration;
     private UpdaterLogger logger;
+    private UpdateService updateService;
 
     @Override
     public void onEnable() {
@@ -38,6 +42,9 @@ public final class BungeeUpdater extends Plugin {
         new Metrics(this, 10203);
 
         this.loadConfig();
+        new BungeeUpdaterConfig(configuration);
+        // Finish or roll back a jar swap that was interrupted by a crash
+        JarSwapper.recover();
         if (getConfig().getBoolean("Enable-Debug", false)) {
             UpdaterLogger.getLogger().info("尝试启用调试……");
             UpdaterLogger.getLogger().enableDebug();
@@ -47,9 +54,17 @@ public final class BungeeUpdater extends Plugin {
         // Check GeyserUpdater version
         this.checkUpdaterVersion();
 
+        BungeeUpdateAdapter adapter = new BungeeUpdateAdapter(this);
+        updateService = new UpdateService(ServerPlatform.BUNGEECORD, Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar"),
+                Paths.get("plugins/Geyser-BungeeCord.jar"), adapter, adapter);
+        // Expose the updater's state and timings to JMX tools, and to Prometheus if enabled
+        UpdaterJmx.register(updateService);
+        PrometheusExporter.start(updateService);
         this.getProxy().getPluginManager().registerCommand(this, new GeyserUpdateCommand());
-        // Player alert if a restart is required when they join
-        getProxy().getPluginManager().registerListener(this, new BungeeJoinListener());
+        // Track the staged Geyser jar, so that checking it is free
+        StagedArtifacts.watch(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar"));
+        // Player alert if a restart is required when they join, registered only while an update is staged
+        new BungeeJoinListener().start();
 
         // Make startup script
         if (configuration.getBoolean("Auto-Script-Generating")) {
@@ -66,7 +81,7 @@ public final class BungeeUpdater extends Plugin {
         }
         // Check if downloaded Geyser file exists periodically
         getProxy().getScheduler().schedule(this, () -> {
-            if (FileUtils.checkFile("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar", true)) {
+            if (StagedArtifacts.isStaged(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar"))) {
                 logger.info("新的 Geyser 版本已下载！请重启 BungeeCord 以使用更新后的版本！ ");
             }
         }, 30, 720, TimeUnit.MINUTES);
@@ -96,6 +111,10 @@ public final class BungeeUpdater extends Plugin {
         } catch (Exception e) {
             logger.error("尝试用新版本的 Geyser jar 替换当前版本时发生错误！放弃替换。.", e);
         }
+        UpdaterJmx.unregister();
+        PrometheusExporter.stop();
+        StagedArtifacts.close();
+        Bandwidth.save();
     }
 
     /**
@@ -114,7 +133,7 @@ public final class BungeeUpdater extends Plugin {
      */
     public void checkConfigVersion(){
         //Change version number only when editing config.yml!
-         if (configuration.getInt("Config-Version", 0) != 2){
+         if (configuration.getInt("Config-Version", 0) != 3){
             logger.error("您的 config.yml 文件已过时。请删除它并允许生成一个新的 config.yml 文件!");
          }
     }
@@ -140,24 +159,17 @@ public final class BungeeUpdater extends Plugin {
     }
 
     /**
-     * Check for a newer version of Geyser every 24hrs
+     * Check for a newer version of Geyser about every Auto-Update-Interval hours, see {@link com.projectg.geyserupdater.common.PollingPolicy}
      */
     public void scheduleAutoUpdate() {
         UpdaterLogger.getLogger().debug("尝试启用自动更新 ");
-        // todo: build this in different way so that we don't repeat it if the Auto-Update-Interval is zero or -1 or something
-        getProxy().getScheduler().schedule(this, () -> {
-            logger.debug("检查是否存在新的 Geyser 版本。 ");
-            try {
-                // Checking for the build numbers of current build.
-                boolean isLatest = GeyserProperties.isLatestBuild();
-                if (!isLatest) {
-                    logger.info("有新的 Geyser 版本可用！正在尝试下载最新版本... ");
-                    GeyserBungeeDownloader.updateGeyser();
-                }
-            } catch (Exception e) {
-                logger.error("检查 Geyser 更新失败！无法连接到 Geyser 构建服务器，或者您的本地分支在服务器上不存在。 ", e);
-            }
-        }, 1, getConfig().getLong("Auto-Update-Interval", 24L) * 60, TimeUnit.MINUTES);
+        long interval = getConfig().getLong("Auto-Update-Interval", 24L);
+        if (interval <= 0) {
+            logger.warn("Auto-Update-Interval 必须大于 0！已禁用自动更新。 ");
+            return;
+        }
+        // The update service schedules each check itself, with jitter and backoff. Auto-Update-Interval is in hours.
+        updateService.startAutoUpdate(TimeUnit.HOURS.toMillis(interval));
     }
 
     /**
@@ -167,23 +179,17 @@ public final class BungeeUpdater extends Plugin {
      * @throws IOException if there was an IO failure
      */
     public void moveGeyserJar() throws IOException {
-        // Moving Geyser Jar to Plugins folder "Overwriting".
-        File fileToCopy = new File("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar");
-        if (fileToCopy.exists()) {
-            logger.debug("将新的 Geyser jar 移动到 plugins 文件夹……");
-            FileInputStream input = new FileInputStream(fileToCopy);
-            File newFile = new File("plugins/Geyser-BungeeCord.jar");
-            FileOutputStream output = new FileOutputStream(newFile);
-            byte[] buf = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = input.read(buf)) > 0) {
-                output.write(buf, 0, bytesRead);
+        Path target = Paths.get("plugins/Geyser-BungeeCord.jar");
+        if (!JarSwapper.isPrepared(target)) {
+            Path staged = Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar");
+            if (!Files.isRegularFile(staged)) {
+                logger.debug("未找到可移动到 plugins 文件夹的新 Geyser jar。 ");
+                return;
             }
-            input.close();
-            output.close();
-        } else {
-            logger.debug("未找到可复制到 plugins 文件夹的新 Geyser jar。 ");
+            JarSwapper.prepare(staged, target);
         }
+        logger.debug("将新的 Geyser jar 移动到 plugins 文件夹……");
+        JarSwapper.apply(target, ServerPlatform.BUNGEECORD, getConfig().getBoolean("Backup-Geyser-Jar", false));
     }
 
     /**
@@ -195,7 +201,12 @@ public final class BungeeUpdater extends Plugin {
         UpdaterLogger.getLogger().debug("如果 BuildUpdate 文件夹中存在 Geyser jar，则删除它 ");
         Path file = Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar");
         Files.deleteIfExists(file);
+        StagedArtifacts.refresh(file);
+    }
+    public UpdateService getUpdateService() {
+        return updateService;
     }
+
     public static BungeeUpdater getPlugin() {
         return plugin;
     }
@@ -1,9 +1,11 @@
 package com.projectg.geyserupdater.bungee.command;
 
-import com.projectg.geyserupdater.bungee.util.GeyserBungeeDownloader;
+import com.projectg.geyserupdater.bungee.BungeeUpdater;
+import com.projectg.geyserupdater.common.UpdateResult;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
 import com.projectg.geyserupdater.common.util.Constants;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.util.ProgressMessages;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
 
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.CommandSender;
@@ -20,34 +22,44 @@ public class GeyserUpdateCommand extends Command {
     public void execute(CommandSender commandSender, String[] args) {
         UpdaterLogger logger = UpdaterLogger.getLogger();
 
-        if (commandSender instanceof ProxiedPlayer player) {
-            try {
-                player.sendMessage(new TextComponent(ChatColor.GOLD + "[GeyserUpdater] " + Constants.CHECK_START));
-                boolean isLatest = GeyserProperties.isLatestBuild();
-                if (isLatest) {
-                    player.sendMessage(new TextComponent(ChatColor.GOLD + "[GeyserUpdater] " + Constants.LATEST));
-                } else {
-                    player.sendMessage(new TextComponent(ChatColor.GOLD + "[GeyserUpdater] " + Constants.OUTDATED));
-                    GeyserBungeeDownloader.updateGeyser();
+        // TODO: filter this against command blocks
+        if (args.length > 0 && args[0].equalsIgnoreCase("cancel")) {
+            boolean cancelled = BungeeUpdater.getPlugin().getUpdateService().cancel("Cancelled by " + commandSender.getName());
+            send(commandSender, ChatColor.GOLD, cancelled ? Constants.CANCEL_REQUESTED : Constants.NOTHING_TO_CANCEL);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("status")) {
+            send(commandSender, ChatColor.GOLD, BungeeUpdater.getPlugin().getUpdateService().describeStatus());
+            return;
+        }
+
+        // Acknowledge now, everything else happens in the update service
+        send(commandSender, ChatColor.GOLD, Constants.CHECK_START);
+        UpdateProgress progress = new ProgressMessages(message -> send(commandSender, ChatColor.GOLD, message));
+        BungeeUpdater.getPlugin().getUpdateService().update(progress).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                if (commandSender instanceof ProxiedPlayer) {
+                    send(commandSender, ChatColor.RED, Constants.FAIL_CHECK);
                 }
-            } catch (Exception e) {
-                player.sendMessage(new TextComponent(ChatColor.RED + "[GeyserUpdater] " + Constants.FAIL_CHECK));
-                logger.error(Constants.FAIL_CHECK, e);
+                logger.error(Constants.FAIL_CHECK, throwable);
+            } else if (result.status() == UpdateResult.Status.UP_TO_DATE) {
+                send(commandSender, ChatColor.GOLD, Constants.LATEST);
+            } else if (result.status() == UpdateResult.Status.IN_PROGRESS) {
+                send(commandSender, ChatColor.GOLD, Constants.UPDATE_IN_PROGRESS);
+            } else if (result.status() == UpdateResult.Status.CANCELLED && commandSender instanceof ProxiedPlayer) {
+                send(commandSender, ChatColor.GOLD, Constants.UPDATE_CANCELLED);
             }
+        });
+    }
+
+    /**
+     * Send a message to the sender of the command. The console is logged to instead.
+     */
+    private static void send(CommandSender sender, ChatColor color, String message) {
+        if (sender instanceof ProxiedPlayer player) {
+            player.sendMessage(new TextComponent(color + "[GeyserUpdater] " + message));
         } else {
-            // TODO: filter this against command blocks
-            try {
-                logger.info(Constants.CHECK_START);
-                boolean isLatest = GeyserProperties.isLatestBuild();
-                if (isLatest) {
-                    logger.info(Constants.LATEST);
-                } else {
-                    logger.info(Constants.OUTDATED);
-                    GeyserBungeeDownloader.updateGeyser();
-                }
-            } catch (Exception e) {
-                logger.error(Constants.FAIL_CHECK, e);
-            }
+            UpdaterLogger.getLogger().info(message);
         }
     }
-}
\ No newline at end of file
+}
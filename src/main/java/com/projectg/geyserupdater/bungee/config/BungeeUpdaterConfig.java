@@ -0,0 +1,28 @@
+package com.projectg.geyserupdater.bungee.config;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import net.md_5.bungee.config.Configuration;
+
+public final class BungeeUpdaterConfig implements UpdaterConfig {
+    private final Configuration config;
+
+    public BungeeUpdaterConfig(Configuration config) {
+        this.config = config;
+        UpdaterConfig.setConfig(this);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        return config.getBoolean(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def) {
+        return config.getLong(key, def);
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        return config.getString(key, def);
+    }
+}
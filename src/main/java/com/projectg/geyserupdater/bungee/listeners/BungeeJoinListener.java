@@ -1,21 +1,37 @@
 package com.projectg.geyserupdater.bungee.listeners;
 
-import com.projectg.geyserupdater.common.util.FileUtils;
+import com.projectg.geyserupdater.bungee.BungeeUpdater;
+import com.projectg.geyserupdater.common.util.StagedUpdateNotifier;
 
 import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.PostLoginEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
-public class BungeeJoinListener implements Listener {
+import java.nio.file.Paths;
+
+public class BungeeJoinListener extends StagedUpdateNotifier implements Listener {
+
+    public BungeeJoinListener() {
+        super(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar"));
+    }
+
+    @Override
+    protected void register() {
+        BungeeUpdater.getPlugin().getProxy().getPluginManager().registerListener(BungeeUpdater.getPlugin(), this);
+    }
+
+    @Override
+    protected void unregister() {
+        BungeeUpdater.getPlugin().getProxy().getPluginManager().unregisterListener(this);
+    }
 
     @EventHandler
     public void onPostLogin(PostLoginEvent event) {
-        // We allow a cached result of maximum age 30 minutes to be used
-        if (FileUtils.checkFile("plugins/GeyserUpdater/BuildUpdate/Geyser-BungeeCord.jar", true)) {
-            if (event.getPlayer().hasPermission("gupdater.geyserupdate")) {
-                event.getPlayer().sendMessage(new TextComponent("[GeyserUpdater] A new Geyser build has been downloaded! Please restart BungeeCord in order to use the updated build!"));
-            }
+        ProxiedPlayer player = event.getPlayer();
+        if (shouldNotify(player.getUniqueId()) && player.hasPermission("gupdater.geyserupdate") && markNotified(player.getUniqueId())) {
+            player.sendMessage(new TextComponent("[GeyserUpdater] A new Geyser build has been downloaded! Please restart BungeeCord in order to use the updated build!"));
         }
     }
-}
\ No newline at end of file
+}
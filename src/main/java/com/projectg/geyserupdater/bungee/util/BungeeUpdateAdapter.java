@@ -0,0 +1,63 @@
+package com.projectg.geyserupdater.bungee.util;
+
+import com.projectg.geyserupdater.bungee.BungeeUpdater;
+import com.projectg.geyserupdater.common.UpdateNotifier;
+import com.projectg.geyserupdater.common.UpdateScheduler;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the update service on the BungeeCord scheduler. All tasks on BungeeCord are async.
+ */
+public class BungeeUpdateAdapter implements UpdateScheduler, UpdateNotifier {
+    private final BungeeUpdater plugin;
+
+    public BungeeUpdateAdapter(BungeeUpdater plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        plugin.getProxy().getScheduler().runAsync(plugin, task);
+    }
+
+    @Override
+    public void runLater(Runnable task, long delay, TimeUnit unit) {
+        plugin.getProxy().getScheduler().schedule(plugin, task, delay, unit);
+    }
+
+    @Override
+    public void notifyAdmins(String message, boolean error) {
+        ChatColor color = error ? ChatColor.RED : ChatColor.GREEN;
+        for (ProxiedPlayer player : plugin.getProxy().getPlayers()) {
+            if (player.hasPermission("gupdater.geyserupdate")) {
+                player.sendMessage(new TextComponent(color + message));
+            }
+        }
+    }
+
+    @Override
+    public void warnRestart() {
+        String message = ChatColor.translateAlternateColorCodes('&', plugin.getConfig().getString("Restart-Message-Players"));
+        for (ProxiedPlayer player : plugin.getProxy().getPlayers()) {
+            player.sendMessage(new TextComponent(message));
+        }
+    }
+
+    /**
+     * BungeeCord can only stop, the restart script brings it back up
+     */
+    @Override
+    public void restart() {
+        plugin.getProxy().stop();
+    }
+
+    @Override
+    public boolean isServerEmpty() {
+        return plugin.getProxy().getOnlineCount() == 0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.projectg.geyserupdater.common;
+
+import com.projectg.geyserupdater.common.util.RetryAfterException;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the auto updater checks for updates, so that a fleet of servers does not hit the Geyser API in lock-step.
+ * <ul>
+ *     <li>The first check is delayed by a random amount after startup, and every later check by the interval plus or minus
+ *     {@link #PERIOD_JITTER}.</li>
+ *     <li>After a failure the next check uses exponential backoff, starting at {@link #BACKOFF_BASE} and capped at
+ *     {@link #MAX_BACKOFF} and the interval.</li>
+ *     <li>After {@link #FAILURE_THRESHOLD} failures in a row, or when the server sends {@code Retry-After}, the circuit opens and
+ *     all checks fail fast without a request until the backoff has passed. Then a single trial request is let through,
+ *     which closes the circuit if it succeeds.</li>
+ * </ul>
+ */
+public class PollingPolicy {
+    private static final long STARTUP_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final long STARTUP_JITTER = TimeUnit.MINUTES.toMillis(10);
+    private static final double PERIOD_JITTER = 0.1;
+    private static final long BACKOFF_BASE = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_BACKOFF = TimeUnit.HOURS.toMillis(6);
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // All guarded by this
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long backoff = 0;
+    private long openUntil = 0;
+
+    /**
+     * @return the delay before the first check after startup, in milliseconds
+     */
+    public long startupDelay() {
+        return STARTUP_DELAY + ThreadLocalRandom.current().nextLong(STARTUP_JITTER);
+    }
+
+    /**
+     * Check if a request may be made now. While the circuit is open this returns false, and once the backoff has passed
+     * it returns true for a single trial request until its result is recorded or the permit is released.
+     *
+     * @return true if a request may be made
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                return true;
+            default:
+                // The trial request is still running
+                return false;
+        }
+    }
+
+    /**
+     * Give back a permit from {@link #tryAcquire()} whose request was never made, for example because it could not be
+     * scheduled. If it was the trial request, the circuit stays open and lets the next check make the trial instead.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * @return the number of milliseconds until the circuit lets a trial request through, 0 if it is not open
+     */
+    public synchronized long remainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openUntil - now()) : 0;
+    }
+
+    /**
+     * Record a successful request, which closes the circuit.
+     */
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Record a failed request. The circuit opens after too many failures in a row, if the trial request failed,
+     * or if the server sent {@code Retry-After}.
+     *
+     * @param cause the cause of the failure
+     */
+    public synchronized void recordFailure(Throwable cause) {
+        failures++;
+        // Equal jitter: at least half of the backoff, so that the delay still grows
+        long max = Math.min(MAX_BACKOFF, BACKOFF_BASE << Math.min(failures - 1, 20));
+        backoff = max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+
+        RetryAfterException retryAfter = findRetryAfter(cause);
+        if (retryAfter != null || failures >= FAILURE_THRESHOLD || state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openUntil = now() + Math.max(backoff, retryAfter == null ? 0 : retryAfter.getRetryAfterMillis());
+        } else {
+            state = State.CLOSED;
+        }
+    }
+
+    /**
+     * @param intervalMillis the configured interval between checks
+     * @return the delay before the next scheduled check, in milliseconds
+     */
+    public synchronized long nextDelay(long intervalMillis) {
+        if (failures == 0) {
+            return jitter(intervalMillis);
+        }
+        // Never wait longer than usual because of backoff, but always wait for the circuit
+        return Math.max(Math.min(backoff, intervalMillis), remainingOpenMillis());
+    }
+
+    /**
+     * @return the number of failures in a row
+     */
+    public synchronized int failures() {
+        return failures;
+    }
+
+    /**
+     * @return the state of the circuit: {@code CLOSED}, {@code OPEN} or {@code HALF_OPEN}
+     */
+    public synchronized String circuitState() {
+        return state.name();
+    }
+
+    /**
+     * @return the current backoff in milliseconds, 0 if the last request succeeded
+     */
+    public synchronized long backoffMillis() {
+        return failures == 0 ? 0 : backoff;
+    }
+
+    private static long jitter(long intervalMillis) {
+        long spread = (long) (intervalMillis * PERIOD_JITTER);
+        return intervalMillis - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+    }
+
+    @Nullable
+    private static RetryAfterException findRetryAfter(Throwable cause) {
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (current instanceof RetryAfterException retryAfter) {
+                return retryAfter;
+            }
+        }
+        return null;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
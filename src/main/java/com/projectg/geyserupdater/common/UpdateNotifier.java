@@ -0,0 +1,31 @@
+package com.projectg.geyserupdater.common;
+
+/**
+ * Tells the players of a platform about the updates of the {@link UpdateService}, and restarts the platform.
+ * Methods are called from background threads, so implementations must move to the main thread where the platform requires it.
+ */
+public interface UpdateNotifier {
+
+    /**
+     * Send a message to every online player with the {@code gupdater.geyserupdate} permission.
+     *
+     * @param message the message
+     * @param error true if the message reports a failure
+     */
+    void notifyAdmins(String message, boolean error);
+
+    /**
+     * Send the configured {@code Restart-Message-Players} to every online player.
+     */
+    void warnRestart();
+
+    /**
+     * Restart the server, or stop it if the platform cannot restart itself.
+     */
+    void restart();
+
+    /**
+     * @return true if no players are online
+     */
+    boolean isServerEmpty();
+}
@@ -0,0 +1,37 @@
+package com.projectg.geyserupdater.common;
+
+/**
+ * The outcome of an update by the {@link UpdateService}.
+ *
+ * @param status what happened
+ * @param build the latest build number of Geyser
+ */
+public record UpdateResult(Status status, int build) {
+
+    public enum Status {
+        /**
+         * The installed build is the latest one.
+         */
+        UP_TO_DATE,
+        /**
+         * The latest build was downloaded and will be used after a restart.
+         */
+        STAGED,
+        /**
+         * The latest build could not be downloaded or was damaged. The cause has been logged.
+         */
+        FAILED,
+        /**
+         * The update was cancelled, by an operator or because it took too long.
+         */
+        CANCELLED,
+        /**
+         * Nothing was done, because another update is still running.
+         */
+        IN_PROGRESS,
+        /**
+         * The latest build was not downloaded by the auto updater, because {@code Monthly-Data-Budget} is used up.
+         */
+        BUDGET_EXHAUSTED
+    }
+}
@@ -0,0 +1,25 @@
+package com.projectg.geyserupdater.common;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of the {@link UpdateService} on the scheduler of a platform.
+ */
+public interface UpdateScheduler {
+
+    /**
+     * Run a task off the main thread.
+     *
+     * @param task the task
+     */
+    void runAsync(Runnable task);
+
+    /**
+     * Run a task off the main thread after a delay of wall clock time.
+     *
+     * @param task the task
+     * @param delay the delay
+     * @param unit the unit of the delay
+     */
+    void runLater(Runnable task, long delay, TimeUnit unit);
+}
@@ -0,0 +1,459 @@
+package com.projectg.geyserupdater.common;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.metrics.UpdaterEvents;
+import com.projectg.geyserupdater.common.metrics.UpdaterMetrics;
+import com.projectg.geyserupdater.common.util.ArtifactFetcher;
+import com.projectg.geyserupdater.common.util.Bandwidth;
+import com.projectg.geyserupdater.common.util.CancellationToken;
+import com.projectg.geyserupdater.common.util.Constants;
+import com.projectg.geyserupdater.common.util.FileUtils;
+import com.projectg.geyserupdater.common.util.GeyserMetadataProvider;
+import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.util.HttpTransport;
+import com.projectg.geyserupdater.common.util.JarSwapper;
+import com.projectg.geyserupdater.common.util.JarValidator;
+import com.projectg.geyserupdater.common.util.ProgressTracker;
+import com.projectg.geyserupdater.common.util.ServerPlatform;
+import com.projectg.geyserupdater.common.util.StagedArtifacts;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks for, downloads, verifies and stages new Geyser builds, then tells admins and restarts the server if configured.
+ * The flow is the same on every platform, which only provides an {@link UpdateScheduler} and an {@link UpdateNotifier}.
+ * All work runs on the scheduler's async threads, and every stage is exposed as a {@link CompletableFuture}.
+ * <p>
+ * Only one update runs at a time. It can be cancelled with {@link #cancel(String)}, and its download is cancelled
+ * if it does not finish within {@code Download-Deadline}.
+ */
+public class UpdateService {
+    private static final long RESTART_DELAY_SECONDS = 10;
+
+    private final ServerPlatform platform;
+    private final Path stagedJar;
+    @Nullable
+    private final Path swapTarget;
+    private final UpdateScheduler scheduler;
+    private final UpdateNotifier notifier;
+    private final Executor async;
+    private final PollingPolicy policy = new PollingPolicy();
+    private final AtomicReference<CancellationToken> running = new AtomicReference<>();
+    private final ProgressTracker tracker = new ProgressTracker();
+
+    /**
+     * @param platform the platform that Geyser is running on
+     * @param stagedJar the path to download the new jar to
+     * @param swapTarget the installed jar to prepare a swap for once the new jar is staged,
+     *                   or null if the platform loads the staged jar by itself
+     * @param scheduler the scheduler of the platform
+     * @param notifier the notifier of the platform
+     */
+    public UpdateService(ServerPlatform platform, Path stagedJar, @Nullable Path swapTarget, UpdateScheduler scheduler, UpdateNotifier notifier) {
+        this.platform = platform;
+        this.stagedJar = stagedJar;
+        this.swapTarget = swapTarget;
+        this.scheduler = scheduler;
+        this.notifier = notifier;
+        this.async = scheduler::runAsync;
+        Bandwidth.setServerEmpty(notifier::isServerEmpty);
+    }
+
+    /**
+     * Check for a new build, and install it if there is one. Nothing is done if another update is still running.
+     * This is a manual update, so it ignores {@code Monthly-Data-Budget} and is made even while the {@link PollingPolicy} holds back scheduled checks.
+     *
+     * @param progress receives the progress of the download
+     * @return the result, or a future that completes exceptionally if the check failed
+     */
+    public CompletableFuture<UpdateResult> update(UpdateProgress progress) {
+        return update(progress, true);
+    }
+
+    private CompletableFuture<UpdateResult> update(UpdateProgress sender, boolean manual) {
+        CancellationToken token = new CancellationToken();
+        if (!running.compareAndSet(null, token)) {
+            return CompletableFuture.completedFuture(new UpdateResult(UpdateResult.Status.IN_PROGRESS, -1));
+        }
+        tracker.reset();
+        UpdateProgress progress = UpdateProgress.all(tracker, sender);
+        progress.stage(UpdateProgress.Stage.CHECKING);
+        CompletableFuture<UpdateResult> result;
+        try {
+            result = check(manual).thenCompose(latest -> {
+                if (latest == null) {
+                    return CompletableFuture.completedFuture(new UpdateResult(UpdateResult.Status.UP_TO_DATE, -1));
+                }
+                if (!manual && Bandwidth.isBudgetExhausted()) {
+                    UpdaterLogger.getLogger().warn(Constants.BUDGET_EXHAUSTED);
+                    return CompletableFuture.completedFuture(new UpdateResult(UpdateResult.Status.BUDGET_EXHAUSTED, latest.build()));
+                }
+                if (token.isCancelled()) {
+                    UpdaterLogger.getLogger().warn(Constants.UPDATE_CANCELLED);
+                    return CompletableFuture.completedFuture(new UpdateResult(UpdateResult.Status.CANCELLED, latest.build()));
+                }
+                return install(latest, progress, token);
+            });
+        } catch (RuntimeException e) {
+            running.compareAndSet(token, null);
+            throw e;
+        }
+        return result.whenComplete((value, throwable) -> {
+            UpdaterMetrics.checkCompleted(throwable == null ? value.status().name() : "ERROR");
+            running.compareAndSet(token, null);
+        });
+    }
+
+    /**
+     * @return the progress of the running update, or null if no update is running
+     */
+    @Nullable
+    public ProgressTracker.Snapshot status() {
+        return running.get() == null ? null : tracker.snapshot();
+    }
+
+    /**
+     * @return the progress of the running update, or the data used this month if none is running, for {@code /geyserupdate status}
+     */
+    public String describeStatus() {
+        ProgressTracker.Snapshot status = status();
+        return status == null ? Constants.STATUS_IDLE.formatted(ProgressTracker.formatBytes(Bandwidth.bytesThisMonth())) : status.describe();
+    }
+
+    /**
+     * Add a listener that receives the progress of every update, whether it was started manually or by the auto updater.
+     *
+     * @param listener the listener, which is called from background threads
+     */
+    public void addProgressListener(UpdateProgress listener) {
+        tracker.addListener(listener);
+    }
+
+    /**
+     * Remove a listener added with {@link #addProgressListener(UpdateProgress)}.
+     *
+     * @param listener the listener
+     */
+    public void removeProgressListener(UpdateProgress listener) {
+        tracker.removeListener(listener);
+    }
+
+    /**
+     * @return true if an update is running
+     */
+    public boolean isRunning() {
+        return running.get() != null;
+    }
+
+    /**
+     * @return true if a new build has been downloaded and waits to be installed on restart
+     */
+    public boolean isUpdateStaged() {
+        return StagedArtifacts.isStaged(stagedJar);
+    }
+
+    /**
+     * @return the policy that decides when the auto updater checks for updates
+     */
+    public PollingPolicy pollingPolicy() {
+        return policy;
+    }
+
+    /**
+     * Cancel the running update. A download that is in progress stops, and its partial file is deleted.
+     *
+     * @param reason why the update is cancelled
+     * @return true if an update was running
+     */
+    public boolean cancel(String reason) {
+        CancellationToken token = running.get();
+        return token != null && token.cancel(reason);
+    }
+
+    /**
+     * Start checking for updates on the given interval. The checks follow the {@link PollingPolicy}: the first one is
+     * delayed by a random amount, failures back off, and no requests are made while the circuit is open.
+     *
+     * @param intervalMillis the interval between checks in milliseconds, which must be positive
+     */
+    public void startAutoUpdate(long intervalMillis) {
+        scheduleAutoUpdate(intervalMillis, policy.startupDelay());
+    }
+
+    private void scheduleAutoUpdate(long intervalMillis, long delayMillis) {
+        UpdaterLogger.getLogger().debug("下一次自动更新检查将在 %d 分钟后进行。".formatted(TimeUnit.MILLISECONDS.toMinutes(delayMillis)));
+        try {
+            scheduler.runLater(() -> autoUpdate().whenComplete((result, throwable) ->
+                    scheduleAutoUpdate(intervalMillis, policy.nextDelay(intervalMillis))), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            UpdaterLogger.getLogger().debug("自动更新已停止。");
+        }
+    }
+
+    /**
+     * Run an update for the auto updater. Only the start of a download and failures are logged,
+     * and repeated failures are logged without their stack trace. Nothing is downloaded once {@code Monthly-Data-Budget} is used up.
+     *
+     * @return the result, or a future that completes exceptionally if the check failed. This method does not throw,
+     * so that {@link #startAutoUpdate(long)} always schedules the next check
+     */
+    public CompletableFuture<UpdateResult> autoUpdate() {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        logger.debug("检查是否存在新的 Geyser 版本。");
+        UpdateProgress progress = new UpdateProgress() {
+            @Override
+            public void stage(Stage stage) {
+                if (stage == Stage.DOWNLOADING) {
+                    logger.info(Constants.OUTDATED);
+                }
+            }
+        };
+        CompletableFuture<UpdateResult> update;
+        try {
+            update = update(progress, false);
+        } catch (RuntimeException e) {
+            // Failed before a future was made. Log it below and keep the schedule going like any other failure
+            update = CompletableFuture.failedFuture(e);
+        }
+        return update.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                if (result.status() == UpdateResult.Status.IN_PROGRESS) {
+                    logger.debug("已有更新正在进行中，跳过本次自动检查。");
+                }
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (cause instanceof CircuitOpenException) {
+                logger.debug(cause.getMessage());
+            } else if (policy.failures() <= 1) {
+                logger.error(Constants.FAIL_CHECK, cause);
+            } else {
+                logger.warn("%s（连续第 %d 次）: %s".formatted(Constants.FAIL_CHECK, policy.failures(), cause.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Check if there is a newer build of Geyser than the installed one.
+     * <p>
+     * A scheduled check asks the {@link PollingPolicy} first. A manual check, from {@code /geyserupdate} or JMX, is always
+     * made, so that an operator can tell if the download server is back; its result is still recorded, so a success
+     * closes the circuit.
+     *
+     * @param manual true if an operator asked for the check
+     * @return the latest build, or null if the installed build is the latest one. The future of a scheduled check fails
+     * with a {@link CircuitOpenException} without making a request if the download server has been failing.
+     */
+    public CompletableFuture<EndpointResponse> check(boolean manual) {
+        if (!manual && !policy.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(Constants.CIRCUIT_OPEN.formatted(policy.remainingOpenMillis() / 1000)));
+        }
+        try {
+            return CompletableFuture.supplyAsync(this::fetchLatest, async);
+        } catch (RuntimeException e) {
+            // The scheduler rejected the check, e.g. while the plugin is disabled, so no request was made
+            if (!manual) {
+                policy.release();
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Request the latest build and record the outcome with the polling policy.
+     */
+    @Nullable
+    private EndpointResponse fetchLatest() {
+        EndpointResponse latest;
+        UpdaterEvents.MetadataFetch event = new UpdaterEvents.MetadataFetch();
+        event.platform = platform.name();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            latest = GeyserMetadataProvider.get();
+        } catch (Exception e) {
+            UpdaterMetrics.record(UpdaterMetrics.Operation.CHECK, start, false);
+            event.outcome = UpdaterEvents.FAILED;
+            event.commit();
+            policy.recordFailure(e);
+            throw new CompletionException(e);
+        }
+        UpdaterMetrics.record(UpdaterMetrics.Operation.CHECK, start, true);
+        UpdaterMetrics.setRemoteBuild(latest.build());
+        event.build = latest.build();
+        event.outcome = UpdaterEvents.SUCCESS;
+        event.commit();
+        policy.recordSuccess();
+        try {
+            return GeyserProperties.isLatestBuild(latest) ? null : latest;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Download, verify and stage a build, then tell admins and restart the server if {@code Auto-Restart-Server} is enabled.
+     *
+     * @param latest the build to install, as returned by {@link #check(boolean)}
+     * @param progress receives the progress of the download
+     * @param token cancels the download
+     * @return the result
+     */
+    public CompletableFuture<UpdateResult> install(EndpointResponse latest, UpdateProgress progress, CancellationToken token) {
+        return CompletableFuture.supplyAsync(() -> {
+            UpdaterLogger logger = UpdaterLogger.getLogger();
+            logger.debug("尝试下载新的 Geyser 版本。");
+            long deadline = UpdaterConfig.getConfig().getLong("Download-Deadline", 30);
+            CancellationToken.Registration deadlineTask = deadline > 0
+                    ? token.cancelAfter(deadline, TimeUnit.MINUTES, "Download did not finish within %d minutes".formatted(deadline))
+                    : null;
+            try {
+                if (!download(latest, progress, token)) {
+                    // fail messages are already sent to the logger in download()
+                    policy.recordFailure(new IOException("Failed to download build " + latest.build()));
+                    notifier.notifyAdmins(Constants.UPDATE_FAILED, true);
+                    return new UpdateResult(UpdateResult.Status.FAILED, latest.build());
+                }
+            } catch (CancellationToken.CancelledException e) {
+                logger.warn("%s (%s)".formatted(Constants.UPDATE_CANCELLED, e.getMessage()));
+                return new UpdateResult(UpdateResult.Status.CANCELLED, latest.build());
+            } finally {
+                if (deadlineTask != null) {
+                    deadlineTask.close();
+                }
+                Bandwidth.save();
+            }
+            logger.info(Constants.UPDATE_SUCCESS);
+            notifier.notifyAdmins(Constants.UPDATE_SUCCESS, false);
+            if (UpdaterConfig.getConfig().getBoolean("Auto-Restart-Server", false)) {
+                logger.warn(Constants.RESTART_WARNING);
+                notifier.warnRestart();
+                scheduler.runLater(notifier::restart, RESTART_DELAY_SECONDS, TimeUnit.SECONDS);
+                UpdaterEvents.RestartScheduled event = new UpdaterEvents.RestartScheduled();
+                event.platform = platform.name();
+                event.build = latest.build();
+                event.delay = RESTART_DELAY_SECONDS;
+                event.commit();
+            }
+            return new UpdateResult(UpdateResult.Status.STAGED, latest.build());
+        }, async);
+    }
+
+    /**
+     * Download, verify and stage a build, and record its outcome in the metrics. A build that was downloaded but failed
+     * validation counts as a failed download.
+     *
+     * @return true if the build was downloaded and staged
+     * @throws CancellationToken.CancelledException if the token was cancelled before the build was staged
+     */
+    private boolean download(EndpointResponse latest, UpdateProgress progress, CancellationToken token) throws CancellationToken.CancelledException {
+        UpdaterEvents.Download event = new UpdaterEvents.Download();
+        event.platform = platform.name();
+        event.build = latest.build();
+        event.begin();
+        long start = System.nanoTime();
+        long received = UpdaterMetrics.bytesDownloaded();
+        boolean staged = false;
+        String outcome = UpdaterEvents.FAILED;
+        try {
+            staged = fetchAndVerify(latest, progress, token);
+            if (staged) {
+                outcome = UpdaterEvents.SUCCESS;
+            }
+            return staged;
+        } catch (CancellationToken.CancelledException e) {
+            outcome = UpdaterEvents.CANCELLED;
+            throw e;
+        } finally {
+            UpdaterMetrics.record(UpdaterMetrics.Operation.DOWNLOAD, start, staged);
+            commit(event, received, outcome);
+            received = UpdaterMetrics.bytesDownloaded() - received;
+            if (staged && received > 0) {
+                // Only counts bytes from the network, a build from the cache or a delta update is not a throughput sample
+                UpdaterMetrics.setLastDownloadBytesPerSecond(received * 1e9 / Math.max(1, System.nanoTime() - start));
+            }
+        }
+    }
+
+    /**
+     * @return true if the build was downloaded and staged
+     * @throws CancellationToken.CancelledException if the token was cancelled before the build was staged
+     */
+    private boolean fetchAndVerify(EndpointResponse latest, UpdateProgress progress, CancellationToken token) throws CancellationToken.CancelledException {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        String fileUrl = HttpTransport.shared().baseUrl() + Constants.GEYSER_DOWNLOAD_LINK + platform.getUrlComponent();
+        String outputPath = stagedJar.toString();
+        try {
+            progress.stage(UpdateProgress.Stage.DOWNLOADING);
+            ArtifactFetcher.fetch(fileUrl, outputPath, expectedSha256(latest), latest.build(), progress, token);
+        } catch (CancellationToken.CancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("下载最新的 Geyser 版本失败 ", e);
+            return false;
+        }
+
+        if (token.isCancelled()) {
+            // Cancelled after the download finished, the jar is removed so that nothing is applied on restart
+            FileUtils.deleteQuietly(stagedJar);
+            token.throwIfCancelled();
+        }
+        progress.stage(UpdateProgress.Stage.VERIFYING);
+        if (!JarValidator.isValid(stagedJar, platform)) {
+            FileUtils.deleteQuietly(stagedJar);
+            return false;
+        }
+        if (swapTarget != null) {
+            // Stage the jar next to the installed one now, so that the swap on shutdown is a single rename
+            try {
+                JarSwapper.prepare(stagedJar, swapTarget);
+            } catch (IOException e) {
+                logger.warn("无法准备新的 Geyser 版本，将在关闭时复制它: " + e.getMessage());
+                JarSwapper.discard(swapTarget);
+            }
+        }
+        progress.stage(UpdateProgress.Stage.STAGED);
+        return true;
+    }
+
+    private static void commit(UpdaterEvents.Download event, long receivedBefore, String outcome) {
+        event.bytes = UpdaterMetrics.bytesDownloaded() - receivedBefore;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    @Nullable
+    private String expectedSha256(EndpointResponse latest) {
+        EndpointResponse.Downloads downloads = latest.downloads();
+        if (downloads == null) {
+            return null;
+        }
+        return switch (platform) {
+            case SPIGOT -> downloads.spigot() == null ? null : downloads.spigot().sha256();
+            case BUNGEECORD -> downloads.bungeecord() == null ? null : downloads.bungeecord().sha256();
+            case VELOCITY -> downloads.velocity() == null ? null : downloads.velocity().sha256();
+        };
+    }
+
+    /**
+     * Thrown instead of making a request while the {@link PollingPolicy} has opened the circuit.
+     */
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
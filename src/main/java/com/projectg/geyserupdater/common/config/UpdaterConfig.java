@@ -0,0 +1,35 @@
+package com.projectg.geyserupdater.common.config;
+
+/**
+ * Read-only view of GeyserUpdater's configuration that can be used by the common code, regardless of the platform.
+ */
+public interface UpdaterConfig {
+
+    static void setConfig(UpdaterConfig updaterConfig) {
+        UpdaterConfigHolder.UPDATER_CONFIG = updaterConfig;
+    }
+    static UpdaterConfig getConfig() {
+        return UpdaterConfigHolder.UPDATER_CONFIG;
+    }
+
+    /**
+     * @param key the key of the option
+     * @param def the value to return if the option is not set
+     * @return the value of a boolean option
+     */
+    boolean getBoolean(String key, boolean def);
+
+    /**
+     * @param key the key of the option
+     * @param def the value to return if the option is not set
+     * @return the value of an integer option
+     */
+    long getLong(String key, long def);
+
+    /**
+     * @param key the key of the option
+     * @param def the value to return if the option is not set
+     * @return the value of a string option
+     */
+    String getString(String key, String def);
+}
@@ -0,0 +1,6 @@
+package com.projectg.geyserupdater.common.config;
+
+class UpdaterConfigHolder {
+
+    static UpdaterConfig UPDATER_CONFIG;
+}
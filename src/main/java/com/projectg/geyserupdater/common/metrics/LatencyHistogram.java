@@ -0,0 +1,114 @@
+package com.projectg.geyserupdater.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long an operation takes in fixed buckets, so that recording is a couple of uncontended additions and
+ * summaries can be read at any time without locking. Percentiles are reported as the upper bound of their bucket.
+ */
+public class LatencyHistogram {
+    /**
+     * The upper bounds of the buckets in milliseconds. Durations above the last bound are counted in an extra bucket.
+     */
+    private static final long[] BOUNDS_MILLIS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000, 120_000, 300_000, 600_000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record one operation.
+     *
+     * @param nanos how long it took
+     * @param success false if it failed
+     */
+    public void record(long nanos, boolean success) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (!success) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * @return the upper bounds of the buckets in milliseconds, without the last bucket, which has no bound
+     */
+    public static long[] boundsMillis() {
+        return BOUNDS_MILLIS.clone();
+    }
+
+    /**
+     * @return the number of operations in each bucket, with the unbounded bucket last
+     */
+    public long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of operations that failed
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the total time of all operations in nanoseconds
+     */
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * @return a summary of the recorded operations
+     */
+    public LatencySummary summary() {
+        long[] counts = bucketCounts();
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        long mean = total == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(sumNanos.sum() / total);
+        return new LatencySummary(count.sum(), failures.sum(), mean, percentile(counts, total, 0.5),
+                percentile(counts, total, 0.99), TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+    }
+
+    private long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long max = TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // No duration is longer than the largest one, which is also the estimate for the unbounded bucket
+                return i < BOUNDS_MILLIS.length ? Math.min(BOUNDS_MILLIS[i], max) : max;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,64 @@
+package com.projectg.geyserupdater.common.metrics;
+
+/**
+ * A summary of a {@link LatencyHistogram}, which JMX shows as a composite value.
+ */
+public class LatencySummary {
+    private final long count;
+    private final long failures;
+    private final long meanMillis;
+    private final long p50Millis;
+    private final long p99Millis;
+    private final long maxMillis;
+
+    public LatencySummary(long count, long failures, long meanMillis, long p50Millis, long p99Millis, long maxMillis) {
+        this.count = count;
+        this.failures = failures;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * @return the number of operations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of operations that failed
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the mean duration in milliseconds
+     */
+    public long getMeanMillis() {
+        return meanMillis;
+    }
+
+    /**
+     * @return the median duration in milliseconds, rounded up to its bucket
+     */
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    /**
+     * @return the 99th percentile of the duration in milliseconds, rounded up to its bucket
+     */
+    public long getP99Millis() {
+        return p99Millis;
+    }
+
+    /**
+     * @return the longest duration in milliseconds
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
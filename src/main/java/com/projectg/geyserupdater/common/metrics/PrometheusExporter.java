@@ -0,0 +1,190 @@
+package com.projectg.geyserupdater.common.metrics;
+
+import com.projectg.geyserupdater.common.PollingPolicy;
+import com.projectg.geyserupdater.common.UpdateService;
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.util.ProgressTracker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link UpdaterMetrics} in the Prometheus text format on {@code /metrics}, if {@code Metrics-Port} is set.
+ * It listens on {@code Metrics-Bind-Address}, the loopback address by default, so that only a local agent can scrape it.
+ * <p>
+ * A scrape only reads counters and state that are already in memory, so it never touches the network or the disk
+ * and does not slow down a running update.
+ */
+public class PrometheusExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Both guarded by the class lock
+    @Nullable
+    private static HttpServer server;
+    @Nullable
+    private static ExecutorService executor;
+
+    /**
+     * Start serving the metrics of the given service, if {@code Metrics-Port} is set. A failure is logged, as the
+     * updater works without the exporter.
+     *
+     * @param service the update service of the plugin
+     */
+    public static synchronized void start(UpdateService service) {
+        stop();
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        int port = config == null ? 0 : (int) config.getLong("Metrics-Port", 0);
+        if (port <= 0) {
+            return;
+        }
+        String address = config.getString("Metrics-Bind-Address", "127.0.0.1");
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(address, port), 0);
+            http.createContext("/metrics", exchange -> handle(exchange, service));
+            ExecutorService threads = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "GeyserUpdater Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            http.setExecutor(threads);
+            http.start();
+            server = http;
+            executor = threads;
+            UpdaterLogger.getLogger().info("Prometheus 指标已在 http://%s:%d/metrics 上提供。".formatted(address, port));
+        } catch (IOException | RuntimeException e) {
+            UpdaterLogger.getLogger().warn("无法启动 Prometheus 指标服务: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop serving the metrics, if the exporter is running. Should be called when the plugin is disabled.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange, UpdateService service) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render(service).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    /**
+     * @param service the update service of the plugin
+     * @return the metrics in the Prometheus text format
+     */
+    public static String render(UpdateService service) {
+        StringBuilder out = new StringBuilder(4096);
+        long now = System.currentTimeMillis();
+
+        int installed = UpdaterMetrics.installedBuild();
+        int remote = UpdaterMetrics.remoteBuild();
+        if (installed >= 0) {
+            gauge(out, "geyserupdater_installed_build", "Build number of the installed Geyser.", installed);
+        }
+        if (remote >= 0) {
+            gauge(out, "geyserupdater_remote_build", "Latest Geyser build number reported by the download server.", remote);
+        }
+        if (installed >= 0 && remote >= 0) {
+            gauge(out, "geyserupdater_build_lag", "Number of builds the installed Geyser is behind the latest one.", Math.max(0, remote - installed));
+        }
+        gauge(out, "geyserupdater_update_staged", "1 if a new build is staged and waits for a restart.", service.isUpdateStaged() ? 1 : 0);
+        gauge(out, "geyserupdater_update_running", "1 if an update is running.", service.isRunning() ? 1 : 0);
+
+        long lastSuccess = UpdaterMetrics.lastSuccessfulCheckTime();
+        if (lastSuccess > 0) {
+            gauge(out, "geyserupdater_last_successful_check_timestamp_seconds", "Time the download server last answered an update check.", lastSuccess / 1000.0);
+            gauge(out, "geyserupdater_seconds_since_last_successful_check", "Seconds since the download server last answered an update check.", (now - lastSuccess) / 1000.0);
+        }
+        long lastCheck = UpdaterMetrics.lastCheckTime();
+        if (lastCheck > 0) {
+            gauge(out, "geyserupdater_last_check_timestamp_seconds", "Time the last update check finished.", lastCheck / 1000.0);
+        }
+
+        PollingPolicy policy = service.pollingPolicy();
+        String state = policy.circuitState();
+        header(out, "geyserupdater_circuit_state", "gauge", "State of the circuit breaker that guards update checks.");
+        for (String candidate : new String[]{"CLOSED", "OPEN", "HALF_OPEN"}) {
+            out.append("geyserupdater_circuit_state{state=\"").append(candidate.toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(candidate.equals(state) ? 1 : 0).append('\n');
+        }
+        gauge(out, "geyserupdater_circuit_open_remaining_seconds", "Seconds until the open circuit lets a trial check through.", policy.remainingOpenMillis() / 1000.0);
+        gauge(out, "geyserupdater_consecutive_check_failures", "Number of update checks in a row that failed.", policy.failures());
+        gauge(out, "geyserupdater_backoff_seconds", "Current backoff between update checks after failures.", policy.backoffMillis() / 1000.0);
+
+        header(out, "geyserupdater_downloaded_bytes_total", "counter", "Bytes received from the network for downloads since startup.");
+        out.append("geyserupdater_downloaded_bytes_total ").append(UpdaterMetrics.bytesDownloaded()).append('\n');
+        ProgressTracker.Snapshot status = service.status();
+        gauge(out, "geyserupdater_download_bytes_per_second", "Throughput of the running download.", status == null ? 0 : status.bytesPerSecond());
+        gauge(out, "geyserupdater_last_download_bytes_per_second", "Average throughput of the last download from the network.", UpdaterMetrics.lastDownloadBytesPerSecond());
+
+        header(out, "geyserupdater_operation_duration_seconds", "histogram", "Duration of update checks, downloads, hash checks and jar swaps.");
+        long[] bounds = LatencyHistogram.boundsMillis();
+        for (UpdaterMetrics.Operation operation : UpdaterMetrics.Operation.values()) {
+            LatencyHistogram histogram = UpdaterMetrics.histogram(operation);
+            String label = "operation=\"" + operation.name().toLowerCase(Locale.ROOT) + "\"";
+            long[] counts = histogram.bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += counts[i];
+                out.append("geyserupdater_operation_duration_seconds_bucket{").append(label).append(",le=\"")
+                        .append(format(bounds[i] / 1000.0)).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += counts[bounds.length];
+            out.append("geyserupdater_operation_duration_seconds_bucket{").append(label).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append("geyserupdater_operation_duration_seconds_sum{").append(label).append("} ").append(format(histogram.sumNanos() / 1e9)).append('\n');
+            out.append("geyserupdater_operation_duration_seconds_count{").append(label).append("} ").append(cumulative).append('\n');
+        }
+        header(out, "geyserupdater_operation_failures_total", "counter", "Number of update checks, downloads, hash checks and jar swaps that failed.");
+        for (UpdaterMetrics.Operation operation : UpdaterMetrics.Operation.values()) {
+            out.append("geyserupdater_operation_failures_total{operation=\"").append(operation.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(UpdaterMetrics.histogram(operation).failures()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
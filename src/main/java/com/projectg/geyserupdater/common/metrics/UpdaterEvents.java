@@ -0,0 +1,134 @@
+package com.projectg.geyserupdater.common.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the stages of an update, so that the work of the updater can be told apart from other
+ * socket and file I/O and correlated with GC pauses and tick time in the same recording.
+ * <p>
+ * All events are disabled by default, which leaves only a no-op {@code begin()} and {@code commit()} on the hot paths.
+ * Enable them in a JFR settings file or with
+ * {@code jcmd <pid> JFR.start settings=profile +com.projectg.geyserupdater.Download#enabled=true}.
+ */
+public class UpdaterEvents {
+
+    // The outcomes of the operations recorded by the events
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    @Name("com.projectg.geyserupdater.MetadataFetch")
+    @Label("Geyser Metadata Fetch")
+    @Category("GeyserUpdater")
+    @Description("A request for the metadata of the latest Geyser build")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class MetadataFetch extends Event {
+        @Label("Platform")
+        public String platform;
+
+        @Label("Build")
+        @Description("The latest build number reported by the download server, -1 if the request failed")
+        public int build = -1;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("com.projectg.geyserupdater.Download")
+    @Label("Geyser Download")
+    @Category("GeyserUpdater")
+    @Description("Getting a new Geyser build, from a download, a delta update or a cache")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Download extends Event {
+        @Label("Platform")
+        public String platform;
+
+        @Label("Build")
+        public int build;
+
+        @Label("Bytes")
+        @Description("The bytes received from the network")
+        @DataAmount(DataAmount.BYTES)
+        public long bytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("com.projectg.geyserupdater.HashVerification")
+    @Label("Geyser Hash Verification")
+    @Category("GeyserUpdater")
+    @Description("Hashing a file to compare it against its expected sha256")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class HashVerification extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Bytes")
+        @DataAmount(DataAmount.BYTES)
+        public long bytes;
+
+        @Label("Hashing Time")
+        @Description("The time spent hashing. A file hashed while it was downloaded was hashed before this event started.")
+        @Timespan(Timespan.NANOSECONDS)
+        public long hashingTime;
+
+        @Label("Outcome")
+        @Description("FAILED if the file could not be read or does not match its expected hash")
+        public String outcome;
+    }
+
+    @Name("com.projectg.geyserupdater.JarSwap")
+    @Label("Geyser Jar Swap")
+    @Category("GeyserUpdater")
+    @Description("Preparing or applying the swap of the installed Geyser jar")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class JarSwap extends Event {
+        @Label("Platform")
+        @Description("The platform of the jar, only known when the swap is applied")
+        public String platform;
+
+        @Label("Phase")
+        @Description("PREPARE or APPLY")
+        public String phase;
+
+        @Label("Target")
+        public String target;
+
+        @Label("Bytes")
+        @DataAmount(DataAmount.BYTES)
+        public long bytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("com.projectg.geyserupdater.RestartScheduled")
+    @Label("Geyser Restart Scheduled")
+    @Category("GeyserUpdater")
+    @Description("A restart of the server scheduled after a new Geyser build was staged")
+    @Enabled(false)
+    public static class RestartScheduled extends Event {
+        @Label("Platform")
+        public String platform;
+
+        @Label("Build")
+        public int build;
+
+        @Label("Delay")
+        @Timespan(Timespan.SECONDS)
+        public long delay;
+    }
+}
@@ -0,0 +1,149 @@
+package com.projectg.geyserupdater.common.metrics;
+
+import com.projectg.geyserupdater.common.UpdateResult;
+import com.projectg.geyserupdater.common.UpdateService;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.util.Bandwidth;
+import com.projectg.geyserupdater.common.util.Constants;
+import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes an {@link UpdateService} and the {@link UpdaterMetrics} over JMX.
+ */
+public class UpdaterJmx implements UpdaterMXBean {
+    public static final String OBJECT_NAME = "com.projectg.geyserupdater:type=Updater";
+
+    private final UpdateService service;
+
+    private UpdaterJmx(UpdateService service) {
+        this.service = service;
+    }
+
+    /**
+     * Register the MBean for the given service, replacing one left behind by a previous instance of the plugin.
+     * A failure is logged, as the updater works without JMX.
+     *
+     * @param service the update service of the plugin
+     */
+    public static synchronized void register(UpdateService service) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new UpdaterJmx(service), name);
+        } catch (JMException | SecurityException e) {
+            UpdaterLogger.getLogger().warn("无法注册 JMX MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregister the MBean, if it is registered. Should be called when the plugin is disabled.
+     */
+    public static synchronized void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | SecurityException e) {
+            UpdaterLogger.getLogger().debug("无法注销 JMX MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getInstalledBuild() {
+        if (UpdaterMetrics.installedBuild() < 0) {
+            // Not checked yet. The installed build only changes on restart, so it is read once.
+            try {
+                UpdaterMetrics.setInstalledBuild(Integer.parseInt(GeyserProperties.getGeyserGitPropertiesValue("git.build.number")));
+            } catch (Exception e) {
+                UpdaterLogger.getLogger().debug("无法读取已安装的 Geyser 版本: " + e.getMessage());
+            }
+        }
+        return UpdaterMetrics.installedBuild();
+    }
+
+    @Override
+    public int getRemoteBuild() {
+        return UpdaterMetrics.remoteBuild();
+    }
+
+    @Override
+    public boolean isUpdateStaged() {
+        return service.isUpdateStaged();
+    }
+
+    @Override
+    public boolean isUpdateRunning() {
+        return service.isRunning();
+    }
+
+    @Override
+    public long getLastCheckTime() {
+        return UpdaterMetrics.lastCheckTime();
+    }
+
+    @Override
+    public String getLastCheckOutcome() {
+        return UpdaterMetrics.lastCheckOutcome();
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return UpdaterMetrics.bytesDownloaded();
+    }
+
+    @Override
+    public long getBytesDownloadedThisMonth() {
+        return Bandwidth.bytesThisMonth();
+    }
+
+    @Override
+    public LatencySummary getCheckLatency() {
+        return UpdaterMetrics.histogram(UpdaterMetrics.Operation.CHECK).summary();
+    }
+
+    @Override
+    public LatencySummary getDownloadLatency() {
+        return UpdaterMetrics.histogram(UpdaterMetrics.Operation.DOWNLOAD).summary();
+    }
+
+    @Override
+    public LatencySummary getHashLatency() {
+        return UpdaterMetrics.histogram(UpdaterMetrics.Operation.HASH).summary();
+    }
+
+    @Override
+    public LatencySummary getSwapLatency() {
+        return UpdaterMetrics.histogram(UpdaterMetrics.Operation.SWAP).summary();
+    }
+
+    @Override
+    public String checkForUpdates() {
+        CompletableFuture<UpdateResult> result = service.update(UpdateProgress.NONE);
+        if (result.isDone() && !result.isCompletedExceptionally() && result.join().status() == UpdateResult.Status.IN_PROGRESS) {
+            return Constants.UPDATE_IN_PROGRESS;
+        }
+        result.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                UpdaterLogger.getLogger().error(Constants.FAIL_CHECK, throwable);
+            }
+        });
+        return Constants.CHECK_START;
+    }
+
+    @Override
+    public boolean cancelDownload() {
+        return service.cancel("Cancelled over JMX");
+    }
+}
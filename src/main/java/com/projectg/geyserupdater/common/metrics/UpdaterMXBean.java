@@ -0,0 +1,83 @@
+package com.projectg.geyserupdater.common.metrics;
+
+/**
+ * The management interface of GeyserUpdater, registered as {@value UpdaterJmx#OBJECT_NAME} so that the state of the
+ * updater can be read and controlled with JConsole, VisualVM or a JMX exporter.
+ */
+public interface UpdaterMXBean {
+
+    /**
+     * @return the build number of the installed Geyser, or -1 if it could not be read
+     */
+    int getInstalledBuild();
+
+    /**
+     * @return the latest build number reported by the download server, or -1 if it has not been checked yet
+     */
+    int getRemoteBuild();
+
+    /**
+     * @return true if a new build has been downloaded and waits to be installed on restart
+     */
+    boolean isUpdateStaged();
+
+    /**
+     * @return true if an update is running
+     */
+    boolean isUpdateRunning();
+
+    /**
+     * @return the time of the last update check in milliseconds since the epoch, or 0 if there was none
+     */
+    long getLastCheckTime();
+
+    /**
+     * @return the outcome of the last update check: a status such as {@code UP_TO_DATE} or {@code STAGED}, {@code ERROR}
+     * if it failed, or {@code NEVER}
+     */
+    String getLastCheckOutcome();
+
+    /**
+     * @return the number of bytes received for downloads since startup
+     */
+    long getBytesDownloaded();
+
+    /**
+     * @return the number of bytes received for downloads this month
+     */
+    long getBytesDownloadedThisMonth();
+
+    /**
+     * @return the timings of the requests for the latest build
+     */
+    LatencySummary getCheckLatency();
+
+    /**
+     * @return the timings of getting new builds
+     */
+    LatencySummary getDownloadLatency();
+
+    /**
+     * @return the timings of hash checks
+     */
+    LatencySummary getHashLatency();
+
+    /**
+     * @return the timings of preparing and applying jar swaps
+     */
+    LatencySummary getSwapLatency();
+
+    /**
+     * Check for a new build in the background, and install it if there is one, like {@code /geyserupdate}.
+     *
+     * @return a message that tells if the check started
+     */
+    String checkForUpdates();
+
+    /**
+     * Cancel the running update, like {@code /geyserupdate cancel}.
+     *
+     * @return true if an update was running
+     */
+    boolean cancelDownload();
+}
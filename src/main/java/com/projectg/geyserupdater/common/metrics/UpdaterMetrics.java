@@ -0,0 +1,159 @@
+package com.projectg.geyserupdater.common.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and timings of GeyserUpdater, recorded on the hot paths and read by {@link UpdaterJmx}.
+ * Recording never blocks, so it is safe on download threads.
+ */
+public class UpdaterMetrics {
+
+    /**
+     * The operations that are timed.
+     */
+    public enum Operation {
+        /**
+         * A request for the metadata of the latest build.
+         */
+        CHECK,
+        /**
+         * Getting a new build, from a download, a delta update or a cache.
+         */
+        DOWNLOAD,
+        /**
+         * Hashing a file to compare it against its expected sha256.
+         */
+        HASH,
+        /**
+         * Preparing or applying the swap of the installed jar.
+         */
+        SWAP
+    }
+
+    private static final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+    private static final LongAdder bytesDownloaded = new LongAdder();
+
+    private static volatile int installedBuild = -1;
+    private static volatile int remoteBuild = -1;
+    private static volatile long lastCheckTime = 0;
+    private static volatile long lastSuccessfulCheckTime = 0;
+    private static volatile double lastDownloadBytesPerSecond = 0;
+    private static volatile String lastCheckOutcome = "NEVER";
+
+    static {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Record an operation that has finished.
+     *
+     * @param operation the operation
+     * @param startNanos the {@link System#nanoTime()} at which it started
+     * @param success false if it failed
+     */
+    public static void record(Operation operation, long startNanos, boolean success) {
+        histograms.get(operation).record(System.nanoTime() - startNanos, success);
+    }
+
+    /**
+     * @param operation the operation
+     * @return the histogram of the operation
+     */
+    public static LatencyHistogram histogram(Operation operation) {
+        return histograms.get(operation);
+    }
+
+    /**
+     * @param bytes the number of bytes that were just received from the network for a download
+     */
+    public static void addBytesDownloaded(long bytes) {
+        bytesDownloaded.add(bytes);
+    }
+
+    /**
+     * @return the number of bytes received for downloads since startup
+     */
+    public static long bytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    /**
+     * @param build the build number of the installed Geyser
+     */
+    public static void setInstalledBuild(int build) {
+        installedBuild = build;
+    }
+
+    /**
+     * @return the build number of the installed Geyser, or -1 if it has not been read yet
+     */
+    public static int installedBuild() {
+        return installedBuild;
+    }
+
+    /**
+     * Record a successful update check.
+     *
+     * @param build the latest build number reported by the download server
+     */
+    public static void setRemoteBuild(int build) {
+        remoteBuild = build;
+        lastSuccessfulCheckTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the latest build number reported by the download server, or -1 if it has not been checked yet
+     */
+    public static int remoteBuild() {
+        return remoteBuild;
+    }
+
+    /**
+     * Record the outcome of an update check.
+     *
+     * @param outcome the outcome, such as the name of an {@link com.projectg.geyserupdater.common.UpdateResult.Status}
+     */
+    public static void checkCompleted(String outcome) {
+        lastCheckOutcome = outcome;
+        lastCheckTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the time of the last update check in milliseconds since the epoch, or 0 if there was none
+     */
+    public static long lastCheckTime() {
+        return lastCheckTime;
+    }
+
+    /**
+     * @return the outcome of the last update check
+     */
+    public static String lastCheckOutcome() {
+        return lastCheckOutcome;
+    }
+
+    /**
+     * @return the time the download server last answered an update check in milliseconds since the epoch, or 0 if it never did
+     */
+    public static long lastSuccessfulCheckTime() {
+        return lastSuccessfulCheckTime;
+    }
+
+    /**
+     * @param bytesPerSecond the average throughput of the download that just finished
+     */
+    public static void setLastDownloadBytesPerSecond(double bytesPerSecond) {
+        lastDownloadBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return the average throughput of the last download that received bytes from the network, 0 if there was none
+     */
+    public static double lastDownloadBytesPerSecond() {
+        return lastDownloadBytesPerSecond;
+    }
+}
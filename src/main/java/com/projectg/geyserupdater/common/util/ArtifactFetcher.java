@@ -0,0 +1,127 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Gets a verified copy of a Geyser build to the given path, from the cheapest source that is available.
+ */
+public class ArtifactFetcher {
+    private static final ArtifactStore store = new ArtifactStore(Paths.get(Constants.ARTIFACT_STORE_FOLDER));
+
+    /**
+     * Fetch a Geyser build. The local artifact store is checked first, then the shared cache of the host if one is configured.
+     * Otherwise a delta update from the installed jar is tried if it is enabled, and then the file is downloaded.
+     * Downloaded builds are added to the shared cache and the artifact store.
+     *
+     * @param fileURL the url of the build
+     * @param outputPath the path to write the build to
+     * @param expectedSha256 the sha256 of the build, or null if it is unknown
+     * @param build the build number, used to tell if a partial download belongs to this build
+     * @param progress receives the progress of the download
+     * @param token cancels the download
+     * @throws IOException if the build could not be fetched or verified. Nothing is written to the output path in that case.
+     * @throws CancellationToken.CancelledException if the download was cancelled
+     */
+    public static void fetch(String fileURL, String outputPath, @Nullable String expectedSha256, int build, UpdateProgress progress, CancellationToken token) throws IOException {
+        Path output = Paths.get(outputPath);
+        if (expectedSha256 == null) {
+            FileUtils.downloadFile(fileURL, outputPath, null, build, progress, token);
+            return;
+        }
+        Files.createDirectories(output.toAbsolutePath().getParent());
+
+        long storeSize = storeMaxBytes();
+        if (storeSize > 0) {
+            Path stored = store.get(expectedSha256);
+            if (stored != null) {
+                UpdaterLogger.getLogger().info("Geyser 构建 %d 已在本地存储中，跳过下载。".formatted(build));
+                stageFrom(stored, output);
+                return;
+            }
+        }
+
+        SharedArtifactCache shared = sharedCache();
+        if (shared == null) {
+            fetchRemote(fileURL, output, expectedSha256, build, progress, token);
+        } else {
+            Path cached = shared.get(expectedSha256);
+            if (cached == null) {
+                Closeable lock = shared.lock(expectedSha256, token);
+                try {
+                    // Another instance may have published the build while we waited for the lock
+                    cached = shared.get(expectedSha256);
+                    if (cached == null) {
+                        // Throws if the build could not be fetched, so that a jar left at the output by an earlier run is never published
+                        fetchRemote(fileURL, output, expectedSha256, build, progress, token);
+                        shared.put(expectedSha256, output);
+                    }
+                } finally {
+                    lock.close();
+                }
+            }
+            if (cached != null) {
+                UpdaterLogger.getLogger().info("从共享缓存中获取了 Geyser 构建 %d。".formatted(build));
+                stageFrom(cached, output);
+            }
+        }
+
+        if (storeSize > 0) {
+            store.put(expectedSha256, output, storeSize);
+        }
+    }
+
+    /**
+     * @return the shared artifact cache of this host, or null if none is configured
+     */
+    @Nullable
+    private static SharedArtifactCache sharedCache() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        String directory = config == null ? "" : config.getString("Shared-Cache-Directory", "");
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        return new SharedArtifactCache(Paths.get(directory));
+    }
+
+    private static void fetchRemote(String fileURL, Path output, String expectedSha256, int build, UpdateProgress progress, CancellationToken token) throws IOException {
+        if (DeltaUpdater.isEnabled()) {
+            Path installed = GeyserProperties.getInstalledGeyserJar();
+            if (installed != null) {
+                Path delta = output.resolveSibling(output.getFileName() + ".delta");
+                if (DeltaUpdater.apply(fileURL, installed, delta, expectedSha256, progress, token)) {
+                    FileUtils.stageFile(delta, output);
+                    return;
+                }
+                Files.deleteIfExists(delta);
+                token.throwIfCancelled();
+            }
+        }
+        FileUtils.downloadFile(fileURL, output.toString(), expectedSha256, build, progress, token);
+    }
+
+    /**
+     * Hardlink or copy a verified jar next to the output, then move it into place.
+     */
+    private static void stageFrom(Path source, Path output) throws IOException {
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        FileUtils.linkOrCopy(source, temp);
+        FileUtils.stageFile(temp, output);
+    }
+
+    /**
+     * @return the configured maximum size of the artifact store in bytes, 0 if the store is disabled
+     */
+    private static long storeMaxBytes() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        long megabytes = config == null ? 100 : config.getLong("Artifact-Store-Max-Size", 100);
+        return Math.max(0, megabytes) * 1024 * 1024;
+    }
+}
@@ -0,0 +1,184 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps downloaded Geyser jars by their sha256, so that a build that is needed again does not have to be downloaded again.
+ * Jars are stored as {@code <sha256>.jar} next to an {@code index.json} that records their size and when they were last used.
+ * The least recently used jars are evicted once the store grows past its size limit.
+ */
+public class ArtifactStore {
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Path directory;
+    private final Path indexFile;
+    private Index index;
+
+    public ArtifactStore(Path directory) {
+        this.directory = directory;
+        this.indexFile = directory.resolve("index.json");
+    }
+
+    /**
+     * Get a jar from the store. The jar is hashed again, and removed from the store if it does not match.
+     *
+     * @param sha256 the sha256 of the jar
+     * @return the path of the stored jar, or null if it is not in the store
+     */
+    @Nullable
+    public synchronized Path get(String sha256) {
+        load();
+        String key = sha256.toLowerCase(Locale.ROOT);
+        Item item = index.entries.get(key);
+        if (item == null) {
+            return null;
+        }
+        Path file = fileOf(key);
+        try {
+            if (!Files.isRegularFile(file) || Files.size(file) != item.size || !FileUtils.sha256(file).equals(key)) {
+                UpdaterLogger.getLogger().warn("本地存储中的 %s 已损坏，将被移除。".formatted(item.name));
+                remove(key);
+                save();
+                return null;
+            }
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法读取本地存储中的 %s: %s".formatted(file, e.getMessage()));
+            return null;
+        }
+        item.lastUsed = System.currentTimeMillis();
+        save();
+        return file;
+    }
+
+    /**
+     * Add a jar to the store, then evict the least recently used jars until the store fits in the given size.
+     * The jar is hardlinked into the store if possible, otherwise copied. It is not hashed here, since the caller has
+     * just verified it; {@link #get(String)} hashes it again when it is read back from disk.
+     *
+     * @param sha256 the verified sha256 of the jar
+     * @param file the jar
+     * @param maxBytes the maximum size of the store in bytes
+     * @return true if the jar is now in the store
+     */
+    public synchronized boolean put(String sha256, Path file, long maxBytes) {
+        load();
+        String key = sha256.toLowerCase(Locale.ROOT);
+        try {
+            long size = Files.size(file);
+            if (size > maxBytes) {
+                return false;
+            }
+            Files.createDirectories(directory);
+            Path temp = directory.resolve(key + ".jar.tmp");
+            FileUtils.linkOrCopy(file, temp);
+            Files.move(temp, fileOf(key), StandardCopyOption.REPLACE_EXISTING);
+
+            Item item = new Item();
+            item.name = file.getFileName().toString();
+            item.size = size;
+            item.lastUsed = System.currentTimeMillis();
+            index.entries.put(key, item);
+            evict(maxBytes, key);
+            save();
+            return true;
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法将 %s 保存到本地存储: %s".formatted(file, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Evict the least recently used jars until the store fits in the given size.
+     *
+     * @param maxBytes the maximum size of the store in bytes
+     * @param keep the sha256 of a jar that must not be evicted, may be null
+     */
+    private void evict(long maxBytes, @Nullable String keep) {
+        long total = index.entries.values().stream().mapToLong(item -> item.size).sum();
+        while (total > maxBytes) {
+            String oldest = index.entries.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(keep))
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+            if (oldest == null) {
+                return;
+            }
+            UpdaterLogger.getLogger().debug("从本地存储中移除最久未使用的 " + index.entries.get(oldest).name);
+            total -= index.entries.get(oldest).size;
+            remove(oldest);
+        }
+    }
+
+    private void remove(String key) {
+        index.entries.remove(key);
+        try {
+            Files.deleteIfExists(fileOf(key));
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法删除 %s: %s".formatted(fileOf(key), e.getMessage()));
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + ".jar");
+    }
+
+    private void load() {
+        if (index != null) {
+            return;
+        }
+        index = new Index();
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            Index read = gson.fromJson(reader, Index.class);
+            if (read != null && read.entries != null) {
+                // Jars that were deleted by hand are forgotten
+                read.entries.keySet().removeIf(key -> !Files.isRegularFile(fileOf(key)));
+                index = read;
+            }
+        } catch (IOException | JsonParseException e) {
+            UpdaterLogger.getLogger().warn("无法读取本地存储的索引，将重新创建: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(directory);
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(index, writer);
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法保存本地存储的索引: " + e.getMessage());
+        }
+    }
+
+    private static class Index {
+        private Map<String, Item> entries = new LinkedHashMap<>();
+    }
+
+    private static class Item {
+        private String name;
+        private long size;
+        private long lastUsed;
+    }
+}
@@ -0,0 +1,114 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.metrics.UpdaterMetrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Limits how fast Geyser builds are downloaded and counts how much is downloaded per month, so that an update neither
+ * competes with player traffic on a small link nor exceeds the data budget of a metered host.
+ * Only bytes received from the network count, not those that a delta update copies from the installed jar.
+ */
+public class Bandwidth {
+    private static final long SERVER_EMPTY_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private static final RateLimiter limiter = new RateLimiter();
+    private static final DataUsage usage = new DataUsage(Paths.get(Constants.DATA_USAGE_FILE));
+
+    private static volatile BooleanSupplier serverEmpty = () -> false;
+    // Guarded by the class lock
+    private static boolean lastServerEmpty = false;
+    private static long serverEmptyCheckedAt = 0;
+    private static boolean serverEmptyChecked = false;
+
+    /**
+     * Set how to tell if no players are online, in which case {@code Download-Rate-Limit-Empty} applies.
+     *
+     * @param serverEmpty returns true if no players are online, called from download threads
+     */
+    public static void setServerEmpty(BooleanSupplier serverEmpty) {
+        Bandwidth.serverEmpty = serverEmpty;
+    }
+
+    /**
+     * Count bytes that were received from the network, and wait as long as the rate limit requires.
+     *
+     * @param bytes the number of bytes
+     * @param token cancels the wait
+     * @throws IOException if the wait was cancelled or interrupted
+     */
+    static void consume(long bytes, CancellationToken token) throws IOException {
+        usage.add(bytes);
+        UpdaterMetrics.addBytesDownloaded(bytes);
+        long rate = bytesPerSecond();
+        if (rate > 0) {
+            UpdaterConfig config = UpdaterConfig.getConfig();
+            long burst = config == null ? 0 : config.getLong("Download-Burst", 0) * 1024;
+            limiter.acquire(bytes, rate, burst > 0 ? burst : rate, token);
+        }
+    }
+
+    /**
+     * @return true if {@code Download-Rate-Limit} or {@code Download-Rate-Limit-Empty} is set, whether or not it applies right now
+     */
+    static boolean isRateLimited() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        return config != null && (config.getLong("Download-Rate-Limit", 0) > 0 || config.getLong("Download-Rate-Limit-Empty", -1) > 0);
+    }
+
+    /**
+     * @return true if {@code Monthly-Data-Budget} is set and this month's downloads have used it up
+     */
+    public static boolean isBudgetExhausted() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        long budget = config == null ? 0 : config.getLong("Monthly-Data-Budget", 0) * 1024 * 1024;
+        return budget > 0 && usage.bytesThisMonth() >= budget;
+    }
+
+    /**
+     * @return the number of bytes downloaded this month
+     */
+    public static long bytesThisMonth() {
+        return usage.bytesThisMonth();
+    }
+
+    /**
+     * Write this month's count to disk. Called after every download and on shutdown, since counting only updates memory.
+     */
+    public static void save() {
+        usage.save();
+    }
+
+    /**
+     * @return the current rate limit in bytes per second, 0 if there is none
+     */
+    private static long bytesPerSecond() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        if (config == null) {
+            return 0;
+        }
+        long rate = config.getLong("Download-Rate-Limit", 0);
+        long emptyRate = config.getLong("Download-Rate-Limit-Empty", -1);
+        if (emptyRate >= 0 && isServerEmpty()) {
+            rate = emptyRate;
+        }
+        return Math.max(0, rate) * 1024;
+    }
+
+    /**
+     * @return true if no players are online, checked at most every few seconds
+     */
+    private static synchronized boolean isServerEmpty() {
+        long now = System.nanoTime();
+        if (!serverEmptyChecked || now - serverEmptyCheckedAt >= SERVER_EMPTY_CHECK_INTERVAL) {
+            lastServerEmpty = serverEmpty.getAsBoolean();
+            serverEmptyCheckedAt = now;
+            serverEmptyChecked = true;
+        }
+        return lastServerEmpty;
+    }
+}
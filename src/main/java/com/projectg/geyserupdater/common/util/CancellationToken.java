@@ -0,0 +1,145 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets an update attempt be stopped from another thread, by an operator or when a deadline passes.
+ * <p>
+ * Cancellation is cooperative: long running work checks {@link #throwIfCancelled()} between steps, and work that blocks,
+ * like waiting for a response, registers a callback with {@link #onCancel(Runnable)} that unblocks it.
+ */
+public class CancellationToken {
+    /**
+     * A token that is never cancelled.
+     */
+    public static final CancellationToken NONE = new CancellationToken() {
+        @Override
+        public boolean cancel(String reason) {
+            return false;
+        }
+    };
+
+    /**
+     * Runs deadlines. It is separate from the scheduler of the platform, which may be a single thread that is busy with
+     * the very download a deadline should stop. The thread exits while no deadline is pending.
+     */
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "GeyserUpdater Deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timer.setKeepAliveTime(1, TimeUnit.MINUTES);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+    @Nullable
+    private volatile String reason;
+
+    /**
+     * Cancel the work. Only the first call has an effect.
+     *
+     * @param reason why the work was cancelled
+     * @return true if the token was not cancelled before
+     */
+    public boolean cancel(String reason) {
+        synchronized (this) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+        }
+        for (Runnable callback : callbacks) {
+            // Removing first makes sure a callback that is registered concurrently only runs once
+            if (callbacks.remove(callback)) {
+                run(callback);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the work has been cancelled
+     */
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * @throws CancelledException if the work has been cancelled
+     */
+    public void throwIfCancelled() throws CancelledException {
+        String reason = this.reason;
+        if (reason != null) {
+            throw new CancelledException(reason);
+        }
+    }
+
+    /**
+     * Run a callback when the work is cancelled, or now if it already is. The callback runs on the thread that cancels.
+     *
+     * @param callback the callback
+     * @return a registration to close once the callback is not needed anymore
+     */
+    public Registration onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (isCancelled() && callbacks.remove(callback)) {
+            run(callback);
+        }
+        return () -> callbacks.remove(callback);
+    }
+
+    /**
+     * Cancel the work once a delay has passed, unless the returned registration is closed before.
+     *
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @param reason why the work was cancelled
+     * @return a registration to close once the work has finished
+     */
+    public Registration cancelAfter(long delay, TimeUnit unit, String reason) {
+        ScheduledFuture<?> deadline = timer.schedule(() -> cancel(reason), delay, unit);
+        return () -> deadline.cancel(false);
+    }
+
+    private static void run(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            UpdaterLogger.getLogger().debug("取消时发生错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A callback registered with {@link #onCancel(Runnable)} or a deadline set with {@link #cancelAfter(long, TimeUnit, String)}.
+     */
+    public interface Registration extends AutoCloseable {
+        /**
+         * Remove the callback or the deadline.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Thrown by work that stopped because its token was cancelled.
+     */
+    public static class CancelledException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CancelledException(String message) {
+            super(message);
+        }
+    }
+}
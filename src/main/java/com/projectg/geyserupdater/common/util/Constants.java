@@ -10,6 +10,24 @@ public class Constants {
     // Geyser 下载链接
     public static final String GEYSER_DOWNLOAD_LINK = "/v2/projects/geyser/versions/latest/builds/latest/downloads/";
 
+    // GeyserUpdater 的数据文件夹
+    public static final String UPDATER_DATA_FOLDER = "plugins/GeyserUpdater";
+
+    // 最新构建元数据的本地缓存文件
+    public static final String METADATA_CACHE_FILE = UPDATER_DATA_FOLDER + "/cache/latest-build.json";
+
+    // 每月下载流量的统计文件
+    public static final String DATA_USAGE_FILE = UPDATER_DATA_FOLDER + "/data-usage.json";
+
+    // 已下载的 Geyser 版本的本地存储，按 sha256 保存
+    public static final String ARTIFACT_STORE_FOLDER = UPDATER_DATA_FOLDER + "/store";
+
+    // 记录进行中的 Geyser jar 替换，用于崩溃后恢复
+    public static final String SWAP_MARKER_FILE = UPDATER_DATA_FOLDER + "/swap.json";
+
+    // 被替换的旧 Geyser jar 的备份
+    public static final String BACKUP_FOLDER = UPDATER_DATA_FOLDER + "/backup";
+
     // 开始检查更新的消息
     public static final String CHECK_START = "正在检查 Geyser 的更新...";
 
@@ -19,6 +37,51 @@ public class Constants {
     // 需要更新的消息
     public static final String OUTDATED = "有更新的 Geyser 版本可用！正在尝试下载最新版本...";
 
+    // 下载进度的消息
+    public static final String DOWNLOAD_PROGRESS = "正在下载新的 Geyser 版本... %d%%";
+
+    // 验证下载的消息
+    public static final String VERIFYING = "正在验证下载的 Geyser 版本...";
+
+    // 新版本已准备就绪的消息
+    public static final String STAGED = "新的 Geyser 版本已准备就绪，将在重启后生效！";
+
+    // 新版本下载成功的消息
+    public static final String UPDATE_SUCCESS = "最新的 Geyser 版本已下载！必须重启服务器以便使更改生效。";
+
+    // 新版本下载失败的消息
+    public static final String UPDATE_FAILED = "下载新的 Geyser 版本时发生错误。请检查服务器控制台以获取更多信息！";
+
+    // 更新被取消的消息
+    public static final String UPDATE_CANCELLED = "Geyser 更新已取消。";
+
+    // 已有更新正在进行的消息
+    public static final String UPDATE_IN_PROGRESS = "已有 Geyser 更新正在进行中！使用 /geyserupdate cancel 取消它。";
+
+    // 请求取消更新的消息
+    public static final String CANCEL_REQUESTED = "正在取消 Geyser 更新...";
+
+    // 没有可取消的更新的消息
+    public static final String NOTHING_TO_CANCEL = "当前没有正在进行的 Geyser 更新。";
+
+    // 本月的下载流量预算已用完的消息
+    public static final String BUDGET_EXHAUSTED = "本月的下载流量预算已用完，自动更新将不会下载新的 Geyser 版本。请使用 /geyserupdate 手动更新。";
+
+    // 更新状态的消息，包括当前阶段和已用时间
+    public static final String STATUS_STAGE = "Geyser 更新状态：%s（已用时 %d 秒）";
+
+    // 下载进度的状态消息，包括已下载大小、总大小、速度和剩余时间
+    public static final String STATUS_DOWNLOAD = "Geyser 更新状态：正在下载 %s / %s，速度 %s/s，预计剩余 %s";
+
+    // 没有正在进行的更新时的状态消息，包括本月已下载的流量
+    public static final String STATUS_IDLE = "当前没有正在进行的 Geyser 更新。本月已下载 %s。";
+
+    // 即将重启服务器的消息
+    public static final String RESTART_WARNING = "服务器将在 10 秒后重启！";
+
     // 检查更新失败的消息
     public static final String FAIL_CHECK = "检查 Geyser 更新失败！无法连接到 Geyser 构建服务器，或者您的本地分支在服务器上不存在。";
+
+    // 下载服务器连续出错、自动检查暂停时的消息，包括剩余的秒数
+    public static final String CIRCUIT_OPEN = "Geyser 构建服务器连续出错，将在 %d 秒内跳过自动更新检查。使用 /geyserupdate 可立即手动检查。";
 }
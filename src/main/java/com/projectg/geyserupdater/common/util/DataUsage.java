@@ -0,0 +1,123 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes downloaded in the current calendar month (UTC). Downloads only add to a counter in memory, which
+ * {@link #save()} writes to disk so that the count survives restarts. The count starts over when the month changes.
+ */
+public class DataUsage {
+    private static final Gson gson = new Gson();
+
+    private final Path file;
+    private volatile Month current;
+
+    public DataUsage(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Count downloaded bytes. Called for every chunk of a download, so it never touches the disk.
+     *
+     * @param bytes the number of bytes
+     */
+    public void add(long bytes) {
+        current().bytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of bytes downloaded this month
+     */
+    public long bytesThisMonth() {
+        return current().bytes.get();
+    }
+
+    /**
+     * Write the count to disk.
+     */
+    public synchronized void save() {
+        Month month = current();
+        Entry entry = new Entry();
+        entry.month = month.name;
+        entry.bytes = month.bytes.get();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法保存流量统计: " + e.getMessage());
+        }
+    }
+
+    private Month current() {
+        Month month = current;
+        if (month == null || System.currentTimeMillis() >= month.endsAt) {
+            month = nextMonth();
+        }
+        return month;
+    }
+
+    /**
+     * Load the count from disk on first use, or start a new count once the month is over.
+     */
+    private synchronized Month nextMonth() {
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        if (current == null) {
+            Entry saved = load();
+            current = new Month(now, saved != null && now.toString().equals(saved.month) ? saved.bytes : 0);
+        } else if (!current.name.equals(now.toString())) {
+            current = new Month(now, 0);
+        }
+        return current;
+    }
+
+    @Nullable
+    private Entry load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Entry.class);
+        } catch (IOException | JsonParseException e) {
+            UpdaterLogger.getLogger().warn("无法读取流量统计，将从 0 开始计数: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Month {
+        private final String name;
+        /**
+         * The start of the next month in epoch millis, so that the month is not formatted for every chunk.
+         */
+        private final long endsAt;
+        private final AtomicLong bytes;
+
+        private Month(YearMonth month, long bytes) {
+            this.name = month.toString();
+            this.endsAt = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            this.bytes = new AtomicLong(bytes);
+        }
+    }
+
+    private static class Entry {
+        private String month;
+        private long bytes;
+    }
+}
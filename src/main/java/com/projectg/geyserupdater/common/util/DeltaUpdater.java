@@ -0,0 +1,249 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a new Geyser jar from the installed one, downloading only the zip entries that changed between the two builds.
+ * <p>
+ * The central directory of the new jar is fetched with range requests. Every entry whose compressed data is identical to an
+ * entry of the installed jar (same name, method, crc and sizes) is copied locally, with its local header rebuilt from the
+ * central directory. Everything else is fetched with range requests. The result must match the sha256 published by the
+ * download API, otherwise the caller falls back to a full download.
+ */
+public class DeltaUpdater {
+
+    /**
+     * Ranges that are closer to each other than this are fetched with a single request.
+     */
+    private static final long MERGE_GAP = 16 * 1024;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int DATA_DESCRIPTOR_LENGTH = 16;
+
+    /**
+     * @return true if delta updates are enabled in the config
+     */
+    public static boolean isEnabled() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        return config != null && config.getBoolean("Delta-Updates", false);
+    }
+
+    /**
+     * Try to build the jar at the given url from the installed jar.
+     *
+     * @param fileURL the url of the new jar on the Geyser download server
+     * @param installed the installed jar
+     * @param output the file to write the new jar to, which is overwritten
+     * @param expectedSha256 the sha256 of the new jar
+     * @param progress receives the number of bytes of the new jar written so far, whether fetched or copied
+     * @param token cancels the delta update, in which case this returns false
+     * @return true if the output now holds a verified copy of the new jar, false if a full download is needed
+     */
+    public static boolean apply(String fileURL, Path installed, Path output, String expectedSha256, UpdateProgress progress, CancellationToken token) {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        String sourceUrl = sourceUrl(fileURL);
+        try {
+            SegmentedDownloader.Probe probe = SegmentedDownloader.probe(sourceUrl, token);
+            if (probe == null) {
+                logger.debug("增量更新源不支持范围请求: " + sourceUrl);
+                return false;
+            }
+            long length = probe.contentLength();
+            TransferProgress transferProgress = new TransferProgress(progress, token);
+            transferProgress.start(0, length);
+            long fetched = 0;
+            int reused = 0;
+            int total;
+
+            try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel source = FileChannel.open(installed, StandardOpenOption.READ)) {
+                FileUtils.preallocate(target, length);
+
+                // Fetch the end of the new jar first, which holds the central directory in all but the largest jars
+                long tailStart = Math.max(0, length - ZipCentralDirectory.MAX_TAIL_LENGTH);
+                SegmentedDownloader.fetchRange(sourceUrl, target, tailStart, length - 1, probe.validator(), transferProgress);
+                fetched += length - tailStart;
+                ZipCentralDirectory.End end = ZipCentralDirectory.readEnd(target, length);
+                if (end.offset() < tailStart) {
+                    SegmentedDownloader.fetchRange(sourceUrl, target, end.offset(), tailStart - 1, probe.validator(), transferProgress);
+                    fetched += tailStart - end.offset();
+                    tailStart = end.offset();
+                }
+                List<ZipCentralDirectory.Entry> wanted = new ArrayList<>(ZipCentralDirectory.readEntries(target, end));
+                wanted.sort(Comparator.comparingLong(ZipCentralDirectory.Entry::localHeaderOffset));
+                total = wanted.size();
+
+                Map<String, ZipCentralDirectory.Entry> available = new HashMap<>();
+                for (ZipCentralDirectory.Entry entry : ZipCentralDirectory.readEntries(source, ZipCentralDirectory.readEnd(source, source.size()))) {
+                    available.put(entry.name(), entry);
+                }
+
+                List<long[]> missing = new ArrayList<>();
+                long position = 0;
+                for (int i = 0; i < wanted.size(); i++) {
+                    ZipCentralDirectory.Entry entry = wanted.get(i);
+                    long recordStart = entry.localHeaderOffset();
+                    long recordEnd = i + 1 < wanted.size() ? wanted.get(i + 1).localHeaderOffset() : end.offset();
+                    if (recordStart < position || recordEnd > end.offset()) {
+                        throw new IOException("Overlapping zip entry " + entry.name());
+                    }
+                    if (recordStart >= tailStart) {
+                        // Already fetched along with the central directory
+                        break;
+                    }
+                    recordEnd = Math.min(recordEnd, tailStart);
+                    if (recordStart > position) {
+                        addRange(missing, position, recordStart - 1);
+                    }
+
+                    ZipCentralDirectory.Entry local = available.get(entry.name());
+                    if (canReuse(entry, local, recordEnd - recordStart)) {
+                        long dataStart = writeLocalHeader(target, entry);
+                        copy(source, ZipCentralDirectory.dataOffset(source, local), local.compressedSize(), target, dataStart);
+                        if (entry.hasDataDescriptor()) {
+                            writeDataDescriptor(target, entry, dataStart + entry.compressedSize());
+                        }
+                        reused++;
+                        transferProgress.add(recordEnd - recordStart);
+                    } else {
+                        addRange(missing, recordStart, recordEnd - 1);
+                    }
+                    position = recordEnd;
+                }
+                if (position < tailStart) {
+                    addRange(missing, position, tailStart - 1);
+                }
+
+                for (long[] range : missing) {
+                    SegmentedDownloader.fetchRange(sourceUrl, target, range[0], range[1], probe.validator(), transferProgress);
+                    fetched += range[1] + 1 - range[0];
+                }
+                target.force(false);
+            }
+
+            String hash = FileUtils.sha256(output);
+            if (!hash.equalsIgnoreCase(expectedSha256)) {
+                logger.warn("增量更新生成的文件校验失败，将下载完整文件。");
+                logger.debug("预期 %s，实际 %s".formatted(expectedSha256, hash));
+                return false;
+            }
+            logger.info("增量更新成功：复用了 %d/%d 个条目，下载了 %d/%d 字节。".formatted(reused, total, fetched, length));
+            return true;
+        } catch (CancellationToken.CancelledException e) {
+            logger.debug("增量更新已取消。");
+            return false;
+        } catch (Exception e) {
+            logger.warn("增量更新失败，将下载完整文件: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return the url to fetch ranges of the new jar from, which is the download url unless a delta source is configured
+     */
+    private static String sourceUrl(String fileURL) {
+        String source = UpdaterConfig.getConfig().getString("Delta-Update-Source", "");
+        String baseUrl = HttpTransport.shared().baseUrl();
+        if (source == null || source.isBlank() || !fileURL.startsWith(baseUrl)) {
+            return fileURL;
+        }
+        return source.replaceAll("/+$", "") + fileURL.substring(baseUrl.length());
+    }
+
+    private static boolean canReuse(ZipCentralDirectory.Entry entry, ZipCentralDirectory.Entry local, long recordLength) {
+        if (local == null || entry.isZip64()) {
+            return false;
+        }
+        if (entry.method() != local.method() || entry.crc() != local.crc()
+                || entry.compressedSize() != local.compressedSize() || entry.size() != local.size()) {
+            return false;
+        }
+        // The rebuilt record must fill exactly the space the new jar has for it, otherwise its local header differs
+        long length = ZipCentralDirectory.LOCAL_HEADER_LENGTH + entry.rawName().length + entry.extra().length + entry.compressedSize();
+        if (entry.hasDataDescriptor()) {
+            length += DATA_DESCRIPTOR_LENGTH;
+        }
+        return length == recordLength;
+    }
+
+    /**
+     * Write the local header of an entry, built from its central directory entry.
+     * If the entry has a data descriptor, the crc and sizes are left out of the header, as zip writers do when streaming.
+     *
+     * @return the offset of the entry's data
+     */
+    private static long writeLocalHeader(FileChannel target, ZipCentralDirectory.Entry entry) throws IOException {
+        boolean streamed = entry.hasDataDescriptor();
+        ByteBuffer header = ByteBuffer.allocate(ZipCentralDirectory.LOCAL_HEADER_LENGTH + entry.rawName().length + entry.extra().length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ZipCentralDirectory.LOCAL_HEADER_SIGNATURE)
+                .putShort((short) entry.versionNeeded())
+                .putShort((short) entry.flags())
+                .putShort((short) entry.method())
+                .putShort((short) entry.time())
+                .putShort((short) entry.date())
+                .putInt(streamed ? 0 : (int) entry.crc())
+                .putInt(streamed ? 0 : (int) entry.compressedSize())
+                .putInt(streamed ? 0 : (int) entry.size())
+                .putShort((short) entry.rawName().length)
+                .putShort((short) entry.extra().length)
+                .put(entry.rawName())
+                .put(entry.extra())
+                .flip();
+        return write(target, header, entry.localHeaderOffset());
+    }
+
+    private static void writeDataDescriptor(FileChannel target, ZipCentralDirectory.Entry entry, long position) throws IOException {
+        ByteBuffer descriptor = ByteBuffer.allocate(DATA_DESCRIPTOR_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE)
+                .putInt((int) entry.crc())
+                .putInt((int) entry.compressedSize())
+                .putInt((int) entry.size())
+                .flip();
+        write(target, descriptor, position);
+    }
+
+    /**
+     * @return the position after the written bytes
+     */
+    private static long write(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+        return position;
+    }
+
+    private static void copy(FileChannel source, long sourcePosition, long count, FileChannel target, long targetPosition) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transferred = target.transferFrom(source.position(sourcePosition + done), targetPosition + done, count - done);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of the installed jar");
+            }
+            done += transferred;
+        }
+    }
+
+    private static void addRange(List<long[]> ranges, long first, long last) {
+        if (!ranges.isEmpty()) {
+            long[] previous = ranges.get(ranges.size() - 1);
+            if (first - previous[1] <= MERGE_GAP) {
+                previous[1] = last;
+                return;
+            }
+        }
+        ranges.add(new long[]{first, last});
+    }
+}
@@ -0,0 +1,124 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Describes a partially downloaded file, so that the download can be continued after a dropped connection or a restart.
+ */
+public class DownloadJournal {
+    private static final Gson gson = new Gson();
+
+    private transient Path file;
+
+    private String url;
+    private int build;
+    private String sha256;
+    private long bytesDone;
+    private String validator;
+
+    public DownloadJournal(Path file, String url, int build, @Nullable String sha256) {
+        this.file = file;
+        this.url = url;
+        this.build = build;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Load a journal from disk.
+     *
+     * @param file the journal file
+     * @return the journal, or null if it does not exist, could not be read or has no url
+     */
+    @Nullable
+    public static DownloadJournal load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            DownloadJournal journal = gson.fromJson(reader, DownloadJournal.class);
+            if (journal == null || journal.url == null) {
+                // Empty, or written by hand or by something else, so it cannot describe a download
+                return null;
+            }
+            journal.file = file;
+            return journal;
+        } catch (IOException | JsonParseException e) {
+            UpdaterLogger.getLogger().debug("无法读取下载日志 %s: %s".formatted(file, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * @return true if this journal describes a download of the given file
+     */
+    public boolean matches(String url, int build, @Nullable String sha256) {
+        return Objects.equals(this.url, url) && this.build == build && Objects.equals(this.sha256, sha256);
+    }
+
+    /**
+     * @return true if the partial file can be continued with a range request
+     */
+    public boolean isResumable() {
+        // Without a validator or an expected hash there would be no way to tell if the remote file changed in between
+        return bytesDone > 0 && (validator != null || sha256 != null);
+    }
+
+    /**
+     * Write the journal to disk, replacing the previous version.
+     *
+     * @throws IOException if it failed to write
+     */
+    public void save() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Delete the journal from disk.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法删除下载日志 %s: %s".formatted(file, e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the number of bytes that have been written to the partial file
+     */
+    public long bytesDone() {
+        return bytesDone;
+    }
+
+    public void bytesDone(long bytesDone) {
+        this.bytesDone = bytesDone;
+    }
+
+    /**
+     * @return the ETag or Last-Modified value of the response the partial file was written from, or null if the server sent neither
+     */
+    @Nullable
+    public String validator() {
+        return validator;
+    }
+
+    public void validator(@Nullable String validator) {
+        this.validator = validator;
+    }
+}
@@ -1,104 +1,494 @@
 package com.projectg.geyserupdater.common.util;
 
-import com.google.common.hash.Hashing;
-import com.google.common.io.ByteSource;
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.metrics.UpdaterEvents;
+import com.projectg.geyserupdater.common.metrics.UpdaterMetrics;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class FileUtils {
 
     /**
-     * Epoch time of that last occurrence that {@link #checkFile(String, boolean)} directly checked a file. Returns a value of 0 if the check file method has never been called.
+     * The number of times a download is retried within a single call of {@link #downloadFile(String, String, String, int, UpdateProgress, CancellationToken)}.
      */
-    private static long callTime = 0;
+    private static final int MAX_DOWNLOAD_RETRIES = 3;
 
     /**
-     * Returns a cached result of {@link #checkFile(String, boolean)}. Returns null if the method has never been called.
+     * The number of bytes after which the progress of a download is written to its journal.
      */
-    private static boolean cachedResult;
+    private static final long JOURNAL_INTERVAL = 1024 * 1024;
 
-    // todo this is absolutely abhorrent and assumes we are always downloading the same jar
+    /**
+     * Download a file. If a hash is expected, the file is hashed while it is being written, so it is never read back.
+     * The file is written to a {@code .part} file next to the output path, together with a journal that allows
+     * a dropped download to be continued with a range request, either immediately or on a later call.
+     * If {@code Download-Segments} is above 1 and the server accepts range requests, the file is downloaded
+     * in segments with several concurrent requests instead.
+     *
+     * @param fileURL the url of the file
+     * @param outputPath the path of the output file to write to
+     * @param expectedSha256 the expected sha256 hash of the downloaded file
+     * @param build the build number of the file, used to tell partial downloads of different builds apart
+     * @param progress receives the number of bytes written as the download progresses
+     * @param token cancels the download, in which case the partial file is deleted
+     * @throws IOException if the download failed after its retries, or the file does not match the expected hash.
+     * Nothing is written to the output path in that case.
+     * @throws CancellationToken.CancelledException if the download was cancelled
+     */
+    public static void downloadFile(String fileURL, String outputPath, @Nullable String expectedSha256, int build, UpdateProgress progress, CancellationToken token) throws IOException {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        logger.debug("尝试使用 URL 下载文件: " + fileURL + " ,保存到:   "+ outputPath);
+
+        Path output = Paths.get(outputPath);
+        Files.createDirectories(output.getParent());
+        Path part = output.resolveSibling(output.getFileName() + ".part");
+        Path journalFile = output.resolveSibling(output.getFileName() + ".part.json");
+
+        DownloadJournal journal = DownloadJournal.load(journalFile);
+        if (journal == null || !journal.matches(fileURL, build, expectedSha256) || !Files.isRegularFile(part) || Files.size(part) < journal.bytesDone()) {
+            if (journal != null) {
+                logger.debug("丢弃与本次下载不匹配的部分下载文件: " + part);
+            }
+            Files.deleteIfExists(part);
+            journal = new DownloadJournal(journalFile, fileURL, build, expectedSha256);
+        } else if (journal.isResumable()) {
+            logger.info("发现未完成的下载，将从第 %d 字节继续下载 %s ".formatted(journal.bytesDone(), output.getFileName()));
+        }
+
+        TransferProgress transferProgress = new TransferProgress(progress, token);
+        try {
+            download(fileURL, output, part, journal, expectedSha256, transferProgress);
+        } catch (CancellationToken.CancelledException e) {
+            // A cancelled download is not continued later, so nothing of it is kept
+            logger.debug("下载已取消，删除部分下载的文件: " + part);
+            journal.delete();
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
 
     /**
-     * Check if a file exists.
+     * Download a file to its partial file, in segments or with retries, then verify it and move it to the output path.
      *
-     * @param path the path of the file to test
-     * @param allowCached allow a cached result of maximum 30 minutes to be returned
-     * @return true if the file exists, false if not
+     * @throws IOException if the download failed or the file does not match the expected hash
      */
-    public static boolean checkFile(String path, boolean allowCached) {
+    private static void download(String fileURL, Path output, Path part, DownloadJournal journal, @Nullable String expectedSha256, TransferProgress transferProgress) throws IOException {
         UpdaterLogger logger = UpdaterLogger.getLogger();
-        if (allowCached) {
-            long elapsedTime = System.currentTimeMillis() - callTime;
-            if (elapsedTime < 30 * 60 * 1000) {
-                logger.debug("返回上次检查文件是否存在时缓存的结果。缓存的结果是: " + cachedResult);
-                return cachedResult;
-            } else {
-                logger.debug("不返回上次检查文件是否存在时的缓存结果，因为时间已经过太久。 ");
+        String hash = null;
+        long hashNanos = 0;
+        boolean downloaded = false;
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        int maxSegments = (int) config.getLong("Download-Segments", 1);
+        if (maxSegments > 1 && !journal.isResumable()) {
+            try {
+                SegmentedDownloader.Probe probe = SegmentedDownloader.probe(fileURL, transferProgress.token());
+                long minSegmentSize = config.getLong("Download-Min-Segment-Size", 1024) * 1024;
+                int segments = probe == null ? 1 : SegmentedDownloader.segmentCount(probe.contentLength(), maxSegments, minSegmentSize);
+                if (segments > 1) {
+                    logger.debug("将 %s 分为 %d 段并行下载。".formatted(output.getFileName(), segments));
+                    SegmentedDownloader.download(fileURL, part, probe, segments, transferProgress);
+                    downloaded = true;
+                    if (expectedSha256 != null) {
+                        // The segments arrive out of order, so the digest can only be calculated once they are all written
+                        long hashStart = System.nanoTime();
+                        MessageDigest digest = newSha256Digest();
+                        digest(part, digest);
+                        hash = toHex(digest.digest());
+                        hashNanos = System.nanoTime() - hashStart;
+                    }
+                } else {
+                    logger.debug("服务器不支持分段下载 %s，或文件太小，将使用单个连接下载。".formatted(output.getFileName()));
+                }
+            } catch (CancellationToken.CancelledException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.warn("分段下载 %s 失败，将使用单个连接重新下载: %s ".formatted(output.getFileName(), e.getMessage()));
+                Files.deleteIfExists(part);
+            }
+        }
+
+        for (int attempt = 0; !downloaded; attempt++) {
+            try {
+                InlineHash inline = transfer(fileURL, part, journal, expectedSha256 != null, transferProgress);
+                if (inline != null) {
+                    hash = toHex(inline.digest().digest());
+                    hashNanos = inline.nanos();
+                }
+                downloaded = true;
+            } catch (Exception e) {
+                transferProgress.token().throwIfCancelled();
+                if (attempt >= MAX_DOWNLOAD_RETRIES) {
+                    // The partial file and its journal are kept, so that the next update attempt can continue from here
+                    throw new IOException("Failed to download %s to %s after %d attempts".formatted(fileURL, output, attempt + 1), e);
+                }
+                logger.warn("下载 %s 时连接中断（已下载 %d 字节），正在重试: %s ".formatted(output.getFileName(), journal.bytesDone(), e.getMessage()));
             }
         }
-        Path p = Paths.get(path);
-        boolean exists = Files.exists(p);
 
-        logger.debug("检查文件是否存在。结果是: " + exists);
-        callTime = System.currentTimeMillis();
-        cachedResult = exists;
-        return exists;
+        if (expectedSha256 != null && !verifyHash(part.toFile(), expectedSha256, hash, hashNanos)) {
+            journal.delete();
+            throw new IOException("Download of %s does not match the expected sha256 %s".formatted(fileURL, expectedSha256));
+        }
+        // Only a complete and verified file is ever visible at the output path
+        stageFile(part, output);
+        journal.delete();
     }
 
     /**
-     * Download a file
+     * Flush a fully written file to disk and atomically move it to its final location.
+     * Both paths should be in the same directory, so that the move is a rename.
+     *
+     * @param source the complete file
+     * @param target the final location, which is replaced if it exists
+     * @throws IOException if the file could not be flushed or moved
+     */
+    public static void stageFile(Path source, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            UpdaterLogger.getLogger().debug("文件系统不支持原子移动，改用普通移动: " + target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Persist the rename itself. Directories cannot be opened on every platform, in which case this is skipped.
+        try (FileChannel directory = FileChannel.open(target.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+        }
+        StagedArtifacts.refresh(target);
+    }
+
+    /**
+     * Delete a file if it exists, logging instead of throwing if it could not be deleted.
+     *
+     * @param path the file to delete
+     */
+    public static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法删除 %s: %s".formatted(path, e.getMessage()));
+        }
+        StagedArtifacts.refresh(path);
+    }
+
+    /**
+     * Hardlink a file to a new path, or copy it if the file system does not support hardlinks between the two paths.
+     *
+     * @param source the existing file
+     * @param target the new path, which is replaced if it exists
+     * @throws IOException if it could neither link nor copy the file
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            UpdaterLogger.getLogger().debug("无法创建硬链接，改为复制 %s: %s".formatted(source, e.getMessage()));
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reserve the final size of a file before writing it, so that a short transfer is easy to detect and the file
+     * is less likely to be fragmented.
+     *
+     * @param channel the channel of the file
+     * @param length the final length of the file
+     * @throws IOException if the file could not be extended
+     */
+    public static void preallocate(FileChannel channel, long length) throws IOException {
+        if (length > 0 && channel.size() < length) {
+            channel.write(ByteBuffer.allocate(1), length - 1);
+        }
+    }
+
+    /**
+     * Make one attempt at transferring the remainder of a file, continuing the partial file if the journal and the server allow it.
      *
      * @param fileURL the url of the file
-     * @param outputPath the path of the output file to write to
-     * @param expectedSha256 the expected sha256 hash of the downloaded file
+     * @param part the partial file to write to
+     * @param journal the journal of the partial file, which is updated as the transfer progresses
+     * @param hash whether the file should be hashed
+     * @param progress counts the bytes of the file as they are written
+     * @return the digest of the whole file and the time spent hashing it, or null if it should not be hashed
+     * @throws IOException if the transfer failed
      */
-    public static void downloadFile(String fileURL, String outputPath, @Nullable String expectedSha256) throws IOException {
+    @Nullable
+    private static InlineHash transfer(String fileURL, Path part, DownloadJournal journal, boolean hash, TransferProgress progress) throws IOException {
         UpdaterLogger logger = UpdaterLogger.getLogger();
-        logger.debug("尝试使用 URL 下载文件: " + fileURL + " ,保存到:   "+ outputPath);
+        long offset = journal.isResumable() ? journal.bytesDone() : 0;
 
-        Path outputDirectory = Paths.get(outputPath).getParent();
-        Files.createDirectories(outputDirectory);
-
-        // Download Jar file
-        URL url = new URL(fileURL);
-        try (ReadableByteChannel rbc = Channels.newChannel(url.openStream());
-             FileOutputStream fos = new FileOutputStream(outputPath)) {
+        HttpRequest.Builder request = HttpTransport.shared().request(fileURL);
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            if (journal.validator() != null) {
+                request.header("If-Range", journal.validator());
+            }
+        }
 
-            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-        } catch (Exception e) {
-            logger.error("未能将 %s 下载到 %s ".formatted(fileURL, outputPath), e);
+        HttpResponse<InputStream> response = HttpTransport.shared().sendDownload(request.build(), progress.token());
+        HttpHeaders headers = response.headers();
+        int responseCode = response.statusCode();
+        if (responseCode == HttpURLConnection.HTTP_PARTIAL && offset > 0 && startsAt(headers.firstValue("Content-Range").orElse(null), offset)) {
+            logger.debug("服务器接受了范围请求，从第 %d 字节继续下载。".formatted(offset));
+        } else if (responseCode == HttpURLConnection.HTTP_OK) {
+            if (offset > 0) {
+                logger.debug("服务器不支持继续下载此文件，将从头开始下载。");
+            }
+            offset = 0;
+        } else {
+            HttpTransport.discard(response);
+            if (responseCode == 416 || responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                // The partial file does not fit the remote file anymore, or the server sent a range other than the one
+                // we asked for. Either way the next attempt starts from the beginning instead of repeating the request.
+                journal.bytesDone(0);
+            }
+            throw new IOException("Received %s from GET of %s".formatted(responseCode, fileURL));
         }
+        journal.validator(validatorOf(headers));
+        journal.bytesDone(offset);
+        journal.save();
+        long contentLength = HttpTransport.contentLength(headers);
+        progress.start(offset, contentLength < 0 ? -1 : offset + contentLength);
 
-        if (expectedSha256 != null) {
-            // hash the file
-            File file = new File(outputPath);
-            ByteSource byteSource = com.google.common.io.Files.asByteSource(file);
-            String hash = byteSource.hash(Hashing.sha256()).toString();
+        MessageDigest digest = hash ? newSha256Digest() : null;
+        long hashNanos = 0;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             InputStream input = response.body()) {
 
-            // compare
-            if (expectedSha256.equals(hash)) {
-                if (logger.isDebug()) {
-                    logger.debug("%s 的 %s 校验成功 ".formatted(file, hash));
+            if (digest != null && offset > 0) {
+                // The bytes from the previous attempt only have to be hashed, not downloaded again
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                long position = 0;
+                while (position < offset) {
+                    buffer.limit((int) Math.min(buffer.capacity(), offset - position));
+                    int read = channel.read(buffer, position);
+                    if (read == -1) {
+                        throw new EOFException("Partial download is shorter than its journal: " + part);
+                    }
+                    buffer.flip();
+                    long hashStart = System.nanoTime();
+                    digest.update(buffer);
+                    hashNanos += System.nanoTime() - hashStart;
+                    buffer.clear();
+                    position += read;
                 }
-            } else {
-                logger.warn("期望的哈希值为 %s，但实际得到的是 %s ".formatted(expectedSha256, hash));
+            }
+            channel.truncate(offset);
+            channel.position(offset);
+            if (contentLength >= 0) {
+                preallocate(channel, offset + contentLength);
+            }
 
-                // If the checksum failed we attempt to delete the broken build.
-                if (file.delete()) {
-                    logger.warn("下载了一个校验不正确的 JAR 文件，正在删除： " + file);
-                } else {
-                    logger.error("未能删除一个不正确的下载文件，请手动删除： " + file);
+            byte[] buffer = new byte[64 * 1024];
+            long done = offset;
+            long lastCheckpoint = offset;
+            try {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    ByteBuffer wrapped = ByteBuffer.wrap(buffer, 0, read);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
+                    }
+                    if (digest != null) {
+                        long hashStart = System.nanoTime();
+                        digest.update(buffer, 0, read);
+                        hashNanos += System.nanoTime() - hashStart;
+                    }
+                    done += read;
+                    progress.received(read);
+                    if (contentLength >= 0 && done - offset > contentLength) {
+                        throw new IOException("Received more than the %d bytes announced for %s".formatted(contentLength, fileURL));
+                    }
+                    if (done - lastCheckpoint >= JOURNAL_INTERVAL) {
+                        checkpoint(channel, journal, done);
+                        lastCheckpoint = done;
+                    }
+                }
+                // A connection that is closed early can look like a normal end of the stream
+                if (contentLength >= 0 && done - offset != contentLength) {
+                    throw new EOFException("Connection closed after %d of %d bytes".formatted(done - offset, contentLength));
                 }
+            } finally {
+                // Record whatever made it to disk, so that the next attempt can continue from there
+                try {
+                    checkpoint(channel, journal, done);
+                } catch (IOException e) {
+                    logger.debug("无法更新下载日志: " + e.getMessage());
+                }
+            }
+        }
+        return digest == null ? null : new InlineHash(digest, hashNanos);
+    }
+
+    /**
+     * A digest calculated while a file was downloaded.
+     *
+     * @param digest the digest of the whole file
+     * @param nanos the time spent updating the digest
+     */
+    private record InlineHash(MessageDigest digest, long nanos) {
+    }
+
+    private static void checkpoint(FileChannel channel, DownloadJournal journal, long done) throws IOException {
+        channel.force(false);
+        journal.bytesDone(done);
+        journal.save();
+    }
+
+    /**
+     * @return true if the given Content-Range header describes a range starting at the given offset
+     */
+    private static boolean startsAt(@Nullable String contentRange, long offset) {
+        return contentRange != null && contentRange.trim().startsWith("bytes " + offset + "-");
+    }
+
+    /**
+     * @return a value that can be used in an If-Range header for the response, or null if there is none
+     */
+    @Nullable
+    static String validatorOf(HttpHeaders headers) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        // Weak validators are not allowed in If-Range
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /**
+     * Compare the hash of a file against the expected value, and delete the file if they do not match.
+     * The check is recorded as a hash operation, which took as long as the hashing, and fails if the hashes do not match.
+     *
+     * @param file the file that was hashed
+     * @param expectedSha256 the expected sha256 hash
+     * @param hash the actual sha256 hash of the file
+     * @param hashNanos the time spent calculating the hash
+     * @return true if the hashes match
+     */
+    private static boolean verifyHash(File file, String expectedSha256, String hash, long hashNanos) {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        UpdaterEvents.HashVerification event = new UpdaterEvents.HashVerification();
+        event.begin();
+        boolean matches = expectedSha256.equalsIgnoreCase(hash);
+        UpdaterMetrics.record(UpdaterMetrics.Operation.HASH, System.nanoTime() - hashNanos, matches);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file.toString();
+            event.bytes = file.length();
+            event.hashingTime = hashNanos;
+            event.outcome = matches ? UpdaterEvents.SUCCESS : UpdaterEvents.FAILED;
+            event.commit();
+        }
+        if (matches) {
+            if (logger.isDebug()) {
+                logger.debug("%s 的 %s 校验成功 ".formatted(file, hash));
+            }
+            return true;
+        }
+        logger.warn("期望的哈希值为 %s，但实际得到的是 %s ".formatted(expectedSha256, hash));
+
+        // If the checksum failed we attempt to delete the broken build.
+        if (file.delete()) {
+            logger.warn("下载了一个校验不正确的 JAR 文件，正在删除： " + file);
+        } else {
+            logger.error("未能删除一个不正确的下载文件，请手动删除： " + file);
+        }
+        return false;
+    }
+
+    /**
+     * Calculate the sha256 hash of a file that is already on disk.
+     *
+     * @param path the file to hash
+     * @return the hash as a lowercase hex string
+     * @throws IOException if the file could not be read
+     */
+    public static String sha256(Path path) throws IOException {
+        UpdaterEvents.HashVerification event = new UpdaterEvents.HashVerification();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        long bytes = 0;
+        MessageDigest digest = newSha256Digest();
+        try {
+            bytes = digest(path, digest);
+            success = true;
+        } finally {
+            UpdaterMetrics.record(UpdaterMetrics.Operation.HASH, start, success);
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = path.toString();
+                event.bytes = bytes;
+                event.hashingTime = System.nanoTime() - start;
+                event.outcome = success ? UpdaterEvents.SUCCESS : UpdaterEvents.FAILED;
+                event.commit();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Feed a file into a digest, without recording it as a hash operation.
+     *
+     * @return the number of bytes read
+     */
+    private static long digest(Path path, MessageDigest digest) throws IOException {
+        long bytes = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                bytes += read;
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
             }
         }
+        return bytes;
+    }
+
+    /**
+     * @return a new sha256 message digest
+     */
+    public static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param bytes the bytes to format
+     * @return the bytes as a lowercase hex string
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
     }
-}
\ No newline at end of file
+}
@@ -2,25 +2,87 @@ package com.projectg.geyserupdater.common.util;
 
 import com.google.gson.Gson;
 import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
 
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
 
 public class GeyserDownloadApi {
     private static final Gson gson = new Gson();
 
+    private final MetadataCache cache;
+
+    public GeyserDownloadApi() {
+        this(new MetadataCache(Paths.get(Constants.METADATA_CACHE_FILE)));
+    }
+
+    /**
+     * @param cache keeps the last response for conditional requests
+     */
+    GeyserDownloadApi(MetadataCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Fetch the metadata of the latest Geyser build. The request is conditional if a previous response is cached,
+     * in which case an unchanged build is answered from the cache without parsing anything.
+     *
+     * @return the latest build
+     * @throws Exception if the request failed
+     */
     public EndpointResponse data() throws Exception {
-        URL url = new URL(Constants.GEYSER_BASE_URL + Constants.GEYSER_LATEST_MASTER_ENDPOINT);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+        return fetch(true);
+    }
 
-        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            throw new IllegalStateException("Received %s from GET of %s".formatted(connection.getResponseCode(), url));
+    private EndpointResponse fetch(boolean conditional) throws Exception {
+        HttpTransport transport = HttpTransport.shared();
+        String url = transport.baseUrl() + Constants.GEYSER_LATEST_MASTER_ENDPOINT;
+        HttpRequest.Builder request = transport.request(url).header("Accept-Encoding", "gzip");
+
+        if (conditional) {
+            String etag = cache.etag();
+            String lastModified = cache.lastModified();
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
         }
 
-        try (InputStreamReader reader = new InputStreamReader(connection.getInputStream())) {
-            return gson.fromJson(reader, EndpointResponse.class);
+        HttpResponse<InputStream> response = transport.send(request.build());
+        int responseCode = response.statusCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            HttpTransport.discard(response);
+        }
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && conditional) {
+            EndpointResponse cached = cache.response();
+            if (cached != null) {
+                UpdaterLogger.getLogger().debug("构建元数据未改变，使用缓存的结果。");
+                return cached;
+            }
+            // The cache disappeared between sending the request and reading it, start over without validators
+            cache.clear();
+            return fetch(false);
+        }
+        if (responseCode == 429 || responseCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+            long retryAfter = RetryAfterException.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+            if (retryAfter >= 0) {
+                throw new RetryAfterException("Received %s from GET of %s, retry after %d seconds".formatted(responseCode, url, retryAfter / 1000), retryAfter);
+            }
         }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IllegalStateException("Received %s from GET of %s".formatted(responseCode, url));
+        }
+
+        String body = HttpTransport.readString(response);
+        EndpointResponse latest = gson.fromJson(body, EndpointResponse.class);
+        HttpHeaders headers = response.headers();
+        cache.update(headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null), body, latest);
+        return latest;
     }
-}
\ No newline at end of file
+}
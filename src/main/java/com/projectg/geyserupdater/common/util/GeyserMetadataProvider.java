@@ -0,0 +1,95 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared access to the metadata of the latest Geyser build.
+ * Concurrent callers are merged into a single request, and the result is reused for {@code Metadata-Cache-TTL} seconds,
+ * so that an update check and the download that follows it see the same snapshot.
+ */
+public class GeyserMetadataProvider {
+    private static final GeyserDownloadApi api = new GeyserDownloadApi();
+    private static final Object lock = new Object();
+
+    private static volatile Snapshot snapshot;
+    private static CompletableFuture<EndpointResponse> inFlight;
+
+    /**
+     * Get the metadata of the latest Geyser build. A cached result is returned if it is younger than the configured TTL,
+     * otherwise the caller either starts a new request or waits for the one that is already running.
+     *
+     * @return the latest build
+     * @throws Exception if the request failed
+     */
+    public static EndpointResponse get() throws Exception {
+        Snapshot current = snapshot;
+        if (current != null && current.isFresh()) {
+            UpdaterLogger.getLogger().debug("使用缓存的 Geyser 构建元数据。");
+            return current.response;
+        }
+
+        CompletableFuture<EndpointResponse> future;
+        boolean leader = false;
+        synchronized (lock) {
+            current = snapshot;
+            if (current != null && current.isFresh()) {
+                return current.response;
+            }
+            if (inFlight == null) {
+                inFlight = new CompletableFuture<>();
+                leader = true;
+            }
+            future = inFlight;
+        }
+
+        if (leader) {
+            try {
+                EndpointResponse response = api.data();
+                snapshot = new Snapshot(response, System.nanoTime());
+                future.complete(response);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                synchronized (lock) {
+                    inFlight = null;
+                }
+            }
+        } else {
+            UpdaterLogger.getLogger().debug("等待正在进行的 Geyser 构建元数据请求。");
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Discard the cached snapshot so that the next call to {@link #get()} makes a request.
+     */
+    public static void invalidate() {
+        snapshot = null;
+    }
+
+    private static long ttlNanos() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        long seconds = config == null ? 300 : config.getLong("Metadata-Cache-TTL", 300);
+        return TimeUnit.SECONDS.toNanos(Math.max(0, seconds));
+    }
+
+    private record Snapshot(EndpointResponse response, long fetchTime) {
+        boolean isFresh() {
+            return System.nanoTime() - fetchTime < ttlNanos();
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.projectg.geyserupdater.common.util;
 
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.metrics.UpdaterMetrics;
 import org.geysermc.geyser.GeyserImpl;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
 import java.util.Properties;
 
 public class GeyserProperties {
@@ -18,11 +26,23 @@ public class GeyserProperties {
      * @throws IOException if it fails to fetch either build number
      */
     public static boolean isLatestBuild() throws Exception {
+        return isLatestBuild(GeyserMetadataProvider.get());
+    }
+
+    /**
+     * Compare the local build number to the given build from the Geyser download API
+     *
+     * @param latest the latest build, as returned by {@link GeyserMetadataProvider#get()}
+     * @return true if local build number equals the build number of the given build
+     * @throws IOException if it fails to fetch the local build number
+     */
+    public static boolean isLatestBuild(EndpointResponse latest) throws IOException {
         UpdaterLogger.getLogger().debug("Running isLatestBuild()");
         // Removed get branch since current Geyser endpoints do not yet support it
         // getLatestGeyserBuildNumberFromDownloadPage(getGeyserGitPropertiesValue("git.branch"));
-        int downloadPageBuildNumber = getLatestGeyserBuildNumberFromDownloadPage();
+        int downloadPageBuildNumber = latest.build();
         int localBuildNumber = Integer.parseInt(getGeyserGitPropertiesValue("git.build.number"));
+        UpdaterMetrics.setInstalledBuild(localBuildNumber);
         // Compare build numbers.
         // We treat higher build numbers as "out of date" here because Geyser's build numbers have been (accidentally) reset in the past.
         // Self-compiled builds of Geyser simply do not have a `git.build.number` value, so it is /very/ unlikely that a user will ever have a Git build number higher than upstream anyway.
@@ -48,6 +68,25 @@ public class GeyserProperties {
      */
     public static int getLatestGeyserBuildNumberFromDownloadPage() throws Exception {
         UpdaterLogger.getLogger().debug("Running getLatestGeyserBuildNumberFromJenkins()");
-        return new GeyserDownloadApi().data().build();
+        return GeyserMetadataProvider.get().build();
+    }
+
+    /** Get the jar file that the running Geyser was loaded from.
+     *
+     * @return the path of the jar, or null if Geyser was not loaded from a jar file
+     */
+    @Nullable
+    public static Path getInstalledGeyserJar() {
+        try {
+            CodeSource source = GeyserImpl.class.getProtectionDomain().getCodeSource();
+            if (source == null || source.getLocation() == null) {
+                return null;
+            }
+            Path path = Paths.get(source.getLocation().toURI());
+            return Files.isRegularFile(path) ? path : null;
+        } catch (URISyntaxException | IllegalArgumentException | SecurityException e) {
+            UpdaterLogger.getLogger().debug("无法找到已安装的 Geyser 文件: " + e.getMessage());
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
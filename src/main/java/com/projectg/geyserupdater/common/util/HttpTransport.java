@@ -0,0 +1,369 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HTTP client shared by all requests of GeyserUpdater. Connections are pooled and reused between the metadata
+ * request and the download that follows it, over HTTP/2 where the server supports it.
+ * <p>
+ * Every request has a connect timeout, a read timeout that limits how long the body may stall, and a total timeout
+ * for the whole exchange, so that a hung connection can never pin a thread.
+ */
+public class HttpTransport {
+    private static final String USER_AGENT = "GeyserUpdater";
+
+    private static volatile HttpTransport shared;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Duration readTimeout;
+    private final Duration totalTimeout;
+
+    /**
+     * @param baseUrl the base url of the Geyser download server, without a trailing slash
+     * @param connectTimeout the longest time to wait for a connection
+     * @param readTimeout the longest time to wait for the response headers or for more of the body
+     * @param totalTimeout the longest time a whole request may take, including reading the body
+     */
+    public HttpTransport(String baseUrl, Duration connectTimeout, Duration readTimeout, Duration totalTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.baseUrl = baseUrl;
+        this.readTimeout = readTimeout;
+        this.totalTimeout = totalTimeout;
+    }
+
+    /**
+     * Get the shared transport, creating it from the config on first use.
+     *
+     * @return the shared transport
+     */
+    public static HttpTransport shared() {
+        HttpTransport transport = shared;
+        if (transport == null) {
+            synchronized (HttpTransport.class) {
+                transport = shared;
+                if (transport == null) {
+                    transport = fromConfig();
+                    shared = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Replace the shared transport, for example with one that points at a local stub server.
+     *
+     * @param transport the new shared transport
+     */
+    public static void setShared(HttpTransport transport) {
+        shared = transport;
+    }
+
+    private static HttpTransport fromConfig() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        String baseUrl = config == null ? "" : config.getString("Download-Base-URL", "");
+        if (baseUrl == null || baseUrl.isBlank()) {
+            baseUrl = Constants.GEYSER_BASE_URL;
+        }
+        return new HttpTransport(baseUrl.replaceAll("/+$", ""),
+                Duration.ofSeconds(seconds(config, "Connect-Timeout", 10)),
+                Duration.ofSeconds(seconds(config, "Read-Timeout", 30)),
+                Duration.ofSeconds(seconds(config, "Request-Timeout", 600)));
+    }
+
+    private static long seconds(UpdaterConfig config, String key, long defaultValue) {
+        long value = config == null ? defaultValue : config.getLong(key, defaultValue);
+        return value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * @return the base url of the Geyser download server
+     */
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Start a request with the headers and timeout that all requests share.
+     *
+     * @param url the url to request
+     * @return the request builder
+     */
+    public HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("User-Agent", USER_AGENT);
+    }
+
+    /**
+     * Send a request. The body must be closed by the caller, which also hands the connection back to the pool.
+     *
+     * @param request the request
+     * @return the response, with a body that times out if it stalls or the request takes too long
+     * @throws IOException if the request failed or timed out
+     */
+    public HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        return send(request, CancellationToken.NONE);
+    }
+
+    /**
+     * Send a request that is aborted when the token is cancelled, both while waiting for the response and while reading the body.
+     * The body must be closed by the caller, which also hands the connection back to the pool.
+     *
+     * @param request the request
+     * @param token the token of the work that the request is part of
+     * @return the response, with a body that times out if it stalls or the request takes too long
+     * @throws IOException if the request failed or timed out
+     * @throws CancellationToken.CancelledException if the token was cancelled
+     */
+    public HttpResponse<InputStream> send(HttpRequest request, CancellationToken token) throws IOException {
+        return send(request, token, true);
+    }
+
+    /**
+     * Send a request for a download whose body is read through {@link Bandwidth}. While a rate limit is configured the
+     * total timeout does not apply, since a throttled build may take longer to download than {@code Request-Timeout}.
+     * The read timeout still aborts a body that stalls, and {@code Download-Deadline} bounds the whole update.
+     *
+     * @param request the request
+     * @param token the token of the download
+     * @return the response, with a body that times out if it stalls
+     * @throws IOException if the request failed or timed out
+     * @throws CancellationToken.CancelledException if the token was cancelled
+     */
+    public HttpResponse<InputStream> sendDownload(HttpRequest request, CancellationToken token) throws IOException {
+        return send(request, token, !Bandwidth.isRateLimited());
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request, CancellationToken token, boolean limitTotal) throws IOException {
+        token.throwIfCancelled();
+        long deadline = System.nanoTime() + totalTimeout.toNanos();
+        CompletableFuture<HttpResponse<InputStream>> response = client.sendAsync(request, info -> new TimedBody(limitTotal, deadline, token));
+        CancellationToken.Registration cancellation = token.onCancel(() -> response.cancel(true));
+        try {
+            return response.get();
+        } catch (CancellationException e) {
+            token.throwIfCancelled();
+            throw new IOException("Request to %s was cancelled".formatted(request.uri()), e);
+        } catch (ExecutionException e) {
+            // Cancelling the exchange fails it with an unspecific error
+            token.throwIfCancelled();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Request to %s failed".formatted(request.uri()), cause);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during request to " + request.uri());
+        } finally {
+            cancellation.close();
+        }
+    }
+
+    /**
+     * Read the body of a response as UTF-8, decoding gzip if the server used it. Requests for JSON should ask for gzip
+     * with {@code Accept-Encoding}, downloads of jars should not, since they are already compressed.
+     *
+     * @param response the response
+     * @return the body
+     * @throws IOException if the body could not be read
+     */
+    public static String readString(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+        try (InputStream body = response.body(); InputStream input = gzip ? new GZIPInputStream(body) : body) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Close the body of a response that is not needed.
+     *
+     * @param response the response
+     */
+    public static void discard(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @return the Content-Length of a response, or -1 if it is unknown
+     */
+    public static long contentLength(HttpHeaders headers) {
+        return headers.firstValueAsLong("Content-Length").orElse(-1);
+    }
+
+    /**
+     * Exposes a response body as an input stream whose reads time out. The bytes are requested one batch at a time,
+     * so a slow reader applies back pressure to the connection.
+     */
+    private class TimedBody implements HttpResponse.BodySubscriber<InputStream> {
+        private static final List<ByteBuffer> END = List.of();
+
+        private final BlockingQueue<List<ByteBuffer>> queue = new LinkedBlockingQueue<>();
+        private final boolean limitTotal;
+        private final long deadline;
+        private final CancellationToken token;
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private TimedBody(boolean limitTotal, long deadline, CancellationToken token) {
+            this.limitTotal = limitTotal;
+            this.deadline = deadline;
+            this.token = token;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            queue.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            queue.add(END);
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(END);
+        }
+
+        @Override
+        public CompletionStage<InputStream> getBody() {
+            return CompletableFuture.completedStage(new Stream());
+        }
+
+        private class Stream extends InputStream {
+            private final CancellationToken.Registration cancellation;
+            private Iterator<ByteBuffer> buffers = List.<ByteBuffer>of().iterator();
+            private ByteBuffer current;
+            private boolean done;
+            // Set by close(), which may be called from another thread to abort a blocked read
+            private volatile boolean closed;
+
+            private Stream() {
+                // Runs close() right away if the token is already cancelled
+                cancellation = token.onCancel(this::close);
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                while (current == null || !current.hasRemaining()) {
+                    if (closed) {
+                        token.throwIfCancelled();
+                        throw new IOException("Response body is closed");
+                    }
+                    if (done) {
+                        return -1;
+                    }
+                    if (buffers.hasNext()) {
+                        current = buffers.next();
+                        continue;
+                    }
+                    List<ByteBuffer> next = take();
+                    if (next == END) {
+                        if (closed) {
+                            continue;
+                        }
+                        done = true;
+                        if (error != null) {
+                            throw new IOException("Failed to read the response body: " + error.getMessage(), error);
+                        }
+                        return -1;
+                    }
+                    buffers = next.iterator();
+                    subscription.request(1);
+                }
+                int count = Math.min(length, current.remaining());
+                current.get(bytes, offset, count);
+                return count;
+            }
+
+            private List<ByteBuffer> take() throws IOException {
+                long remaining = limitTotal ? deadline - System.nanoTime() : Long.MAX_VALUE;
+                long wait = Math.min(readTimeout.toNanos(), remaining);
+                List<ByteBuffer> next;
+                try {
+                    next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new InterruptedIOException("Interrupted while reading the response body");
+                }
+                if (next == null) {
+                    close();
+                    if (remaining <= readTimeout.toNanos()) {
+                        throw new HttpTimeoutException("Request did not finish within %d seconds".formatted(totalTimeout.toSeconds()));
+                    }
+                    throw new HttpTimeoutException("No data received for %d seconds".formatted(readTimeout.toSeconds()));
+                }
+                return next;
+            }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (cancellation != null) {
+                    cancellation.close();
+                }
+                Flow.Subscription current = subscription;
+                if (current != null) {
+                    current.cancel();
+                }
+                // Wake up a read that is waiting for data
+                queue.add(END);
+            }
+        }
+    }
+}
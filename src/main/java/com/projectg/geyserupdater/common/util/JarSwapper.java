@@ -0,0 +1,245 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.metrics.UpdaterEvents;
+import com.projectg.geyserupdater.common.metrics.UpdaterMetrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces the installed Geyser jar with a downloaded one.
+ * <p>
+ * The new jar is first prepared as {@code <jar>.new} next to the installed jar, so that it is on the same file system and
+ * applying it on shutdown is a single atomic rename. A marker file records the swap while it is pending, so that a swap
+ * that was interrupted by a crash is finished or rolled back on the next start.
+ */
+public class JarSwapper {
+    private static final Gson gson = new Gson();
+    private static final Path markerFile = Paths.get(Constants.SWAP_MARKER_FILE);
+
+    /**
+     * Prepare a downloaded jar to replace the given jar.
+     *
+     * @param downloaded the downloaded jar, which is left in place
+     * @param target the jar to replace
+     * @throws IOException if the jar could not be prepared
+     */
+    public static synchronized void prepare(Path downloaded, Path target) throws IOException {
+        UpdaterEvents.JarSwap event = new UpdaterEvents.JarSwap();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Path prepared = preparedPath(target);
+            Path temp = prepared.resolveSibling(prepared.getFileName() + ".tmp");
+            // Copied rather than linked, so that the installed jar never shares its data with the artifact store
+            Files.copy(downloaded, temp, StandardCopyOption.REPLACE_EXISTING);
+            String sha256 = FileUtils.sha256(temp);
+            FileUtils.stageFile(temp, prepared);
+            writeMarker(new Marker(target.toString(), sha256, State.PREPARED, null));
+            success = true;
+        } finally {
+            UpdaterMetrics.record(UpdaterMetrics.Operation.SWAP, start, success);
+            commit(event, "PREPARE", null, downloaded, target, success);
+        }
+        UpdaterLogger.getLogger().debug("已准备好替换 " + target);
+    }
+
+    /**
+     * Discard the jar prepared for the given jar, if any.
+     *
+     * @param target the jar that would have been replaced
+     */
+    public static synchronized void discard(Path target) {
+        try {
+            Files.deleteIfExists(preparedPath(target));
+            deleteMarker();
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法删除准备好的 Geyser jar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a new jar has been prepared for the given jar
+     */
+    public static synchronized boolean isPrepared(Path target) {
+        return isPrepared(readMarker(), target);
+    }
+
+    private static boolean isPrepared(@Nullable Marker marker, Path target) {
+        return marker != null && marker.state == State.PREPARED && Paths.get(marker.target).equals(target)
+                && Files.isRegularFile(preparedPath(target));
+    }
+
+    /**
+     * Swap in the jar prepared for the given jar. This must only be called once the installed jar is no longer in use.
+     *
+     * @param target the jar to replace
+     * @param platform the platform the jar is for, used to validate the prepared jar before it is swapped in
+     * @param backup true to keep the replaced jar in the backup folder
+     * @return true if a new jar was swapped in, false if none was prepared for this jar or the prepared jar is damaged
+     * @throws IOException if the swap failed
+     */
+    public static synchronized boolean apply(Path target, ServerPlatform platform, boolean backup) throws IOException {
+        Marker marker = readMarker();
+        if (!isPrepared(marker, target)) {
+            // The marker may be left from a swap of another jar, or from one that is already being applied
+            return false;
+        }
+        Path prepared = preparedPath(target);
+        if (!JarValidator.isValid(prepared, platform)) {
+            discard(target);
+            return false;
+        }
+
+        String backupPath = null;
+        if (backup && Files.isRegularFile(target)) {
+            Path backupFile = Paths.get(Constants.BACKUP_FOLDER).resolve(target.getFileName());
+            Files.createDirectories(backupFile.getParent());
+            // A hardlink keeps the old jar's data alive after the rename, without copying it
+            FileUtils.linkOrCopy(target, backupFile);
+            backupPath = backupFile.toString();
+        }
+
+        UpdaterEvents.JarSwap event = new UpdaterEvents.JarSwap();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            writeMarker(new Marker(target.toString(), marker.sha256, State.APPLYING, backupPath));
+            FileUtils.stageFile(prepared, target);
+            deleteMarker();
+            success = true;
+        } finally {
+            UpdaterMetrics.record(UpdaterMetrics.Operation.SWAP, start, success);
+            commit(event, "APPLY", platform, target, target, success);
+        }
+        return true;
+    }
+
+    /**
+     * Finish or roll back a swap that was interrupted, for example by a crash during shutdown. Should be called on startup.
+     */
+    public static synchronized void recover() {
+        UpdaterLogger logger = UpdaterLogger.getLogger();
+        Marker marker = readMarker();
+        if (marker == null) {
+            return;
+        }
+        Path target = Paths.get(marker.target);
+        Path prepared = preparedPath(target);
+        try {
+            if (marker.state == State.PREPARED) {
+                if (!Files.isRegularFile(prepared) || !FileUtils.sha256(prepared).equalsIgnoreCase(marker.sha256)) {
+                    logger.warn("准备好的 Geyser jar 已丢失或损坏，已取消替换。");
+                    Files.deleteIfExists(prepared);
+                    deleteMarker();
+                }
+                return;
+            }
+
+            if (Files.isRegularFile(prepared)) {
+                // The rename did not happen, so the installed jar is untouched and the swap can simply be tried again
+                writeMarker(new Marker(marker.target, marker.sha256, State.PREPARED, null));
+                logger.warn("上次关闭时未能完成 Geyser jar 的替换，将在下次关闭时重试。");
+            } else if (Files.isRegularFile(target) && FileUtils.sha256(target).equalsIgnoreCase(marker.sha256)) {
+                logger.info("已完成上次中断的 Geyser jar 替换。");
+                deleteMarker();
+            } else if (marker.backup != null && Files.isRegularFile(Paths.get(marker.backup))) {
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                Files.copy(Paths.get(marker.backup), temp, StandardCopyOption.REPLACE_EXISTING);
+                FileUtils.stageFile(temp, target);
+                logger.warn("上次的 Geyser jar 替换失败，已从备份中恢复旧版本。请重启服务器以加载它。");
+                deleteMarker();
+            } else {
+                logger.error("上次的 Geyser jar 替换失败，且没有可用的备份！请手动重新安装 Geyser。");
+                deleteMarker();
+            }
+        } catch (IOException e) {
+            logger.error("无法恢复中断的 Geyser jar 替换", e);
+        }
+    }
+
+    /**
+     * Commit a swap event, if it is enabled. The size of the jar is only read in that case.
+     *
+     * @param jar the jar that was swapped in, or that would have been
+     */
+    private static void commit(UpdaterEvents.JarSwap event, String phase, @Nullable ServerPlatform platform, Path jar, Path target, boolean success) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.phase = phase;
+        event.platform = platform == null ? null : platform.name();
+        event.target = target.toString();
+        try {
+            event.bytes = Files.size(jar);
+        } catch (IOException e) {
+            event.bytes = -1;
+        }
+        event.outcome = success ? UpdaterEvents.SUCCESS : UpdaterEvents.FAILED;
+        event.commit();
+    }
+
+    private static Path preparedPath(Path target) {
+        // Not ending in .jar, so the server does not try to load it as a plugin
+        return target.resolveSibling(target.getFileName() + ".new");
+    }
+
+    @Nullable
+    private static Marker readMarker() {
+        if (!Files.isRegularFile(markerFile)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(markerFile, StandardCharsets.UTF_8)) {
+            Marker marker = gson.fromJson(reader, Marker.class);
+            return marker != null && marker.target != null && marker.state != null ? marker : null;
+        } catch (IOException | JsonParseException e) {
+            UpdaterLogger.getLogger().warn("无法读取 Geyser jar 替换标记: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeMarker(Marker marker) throws IOException {
+        Files.createDirectories(markerFile.getParent());
+        Path temp = markerFile.resolveSibling(markerFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            gson.toJson(marker, writer);
+        }
+        FileUtils.stageFile(temp, markerFile);
+    }
+
+    private static void deleteMarker() throws IOException {
+        Files.deleteIfExists(markerFile);
+    }
+
+    private enum State {
+        PREPARED,
+        APPLYING
+    }
+
+    private static class Marker {
+        private String target;
+        private String sha256;
+        private State state;
+        private String backup;
+
+        private Marker(String target, String sha256, State state, @Nullable String backup) {
+            this.target = target;
+            this.sha256 = sha256;
+            this.state = state;
+            this.backup = backup;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Checks the structure of a Geyser jar without inflating any of its entries, so that a damaged jar is rejected before
+ * the server tries to load it.
+ */
+public class JarValidator {
+
+    /**
+     * Validate a jar, logging the problem if it is damaged.
+     *
+     * @param jar the jar to validate
+     * @param platform the platform the jar is for
+     * @return true if the jar is valid
+     */
+    public static boolean isValid(Path jar, ServerPlatform platform) {
+        long start = System.nanoTime();
+        try {
+            validate(jar, platform);
+            UpdaterLogger.getLogger().debug("已在 %d 毫秒内验证 %s".formatted((System.nanoTime() - start) / 1_000_000, jar));
+            return true;
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().error("Geyser jar %s 已损坏: %s".formatted(jar, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Validate a jar. The end of central directory record and the central directory are walked, every entry's local header
+     * is checked against it, and the plugin descriptor of the platform must be present.
+     *
+     * @param jar the jar to validate
+     * @param platform the platform the jar is for
+     * @throws IOException if the jar is damaged or could not be read. The message describes the problem.
+     */
+    public static void validate(Path jar, ServerPlatform platform) throws IOException {
+        ByteBuffer file;
+        if (OsUtils.isWindows()) {
+            // A mapped file cannot be renamed or deleted on Windows until the mapping is garbage collected
+            file = ByteBuffer.wrap(Files.readAllBytes(jar));
+        } else {
+            try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new ZipException("Jar is too large");
+                }
+                file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+
+        ZipCentralDirectory.End end = ZipCentralDirectory.readEnd(file);
+        List<ZipCentralDirectory.Entry> entries = ZipCentralDirectory.readEntries(file, end);
+        entries.sort(Comparator.comparingLong(ZipCentralDirectory.Entry::localHeaderOffset));
+
+        boolean descriptorFound = false;
+        long previousEnd = 0;
+        for (ZipCentralDirectory.Entry entry : entries) {
+            previousEnd = checkEntry(file, entry, previousEnd, end.offset());
+            if (entry.name().equals(platform.getDescriptorFile())) {
+                descriptorFound = true;
+            }
+        }
+        if (!descriptorFound) {
+            throw new ZipException("Missing " + platform.getDescriptorFile());
+        }
+    }
+
+    /**
+     * Check that an entry's local header matches its central directory entry, and that its data lies between the
+     * previous entry and the central directory.
+     *
+     * @return the offset after the entry's data
+     */
+    private static long checkEntry(ByteBuffer file, ZipCentralDirectory.Entry entry, long previousEnd, long directoryOffset) throws ZipException {
+        long offset = entry.localHeaderOffset();
+        if (offset < previousEnd || offset + ZipCentralDirectory.LOCAL_HEADER_LENGTH > directoryOffset) {
+            throw new ZipException("Entry %s overlaps another entry or the central directory".formatted(entry.name()));
+        }
+        int header = (int) offset;
+        if (file.getInt(header) != ZipCentralDirectory.LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for entry " + entry.name());
+        }
+        if (entry.method() != ZipEntry.STORED && entry.method() != ZipEntry.DEFLATED) {
+            throw new ZipException("Unsupported compression method %d for entry %s".formatted(entry.method(), entry.name()));
+        }
+        if (entry.method() == ZipEntry.STORED && entry.compressedSize() != entry.size()) {
+            throw new ZipException("Stored entry %s has different compressed and uncompressed sizes".formatted(entry.name()));
+        }
+
+        int nameLength = ZipCentralDirectory.u16(file, header + 26);
+        int extraLength = ZipCentralDirectory.u16(file, header + 28);
+        long dataEnd = offset + ZipCentralDirectory.LOCAL_HEADER_LENGTH + nameLength + extraLength + entry.compressedSize();
+        if (dataEnd > directoryOffset) {
+            throw new ZipException("Data of entry %s runs past the central directory".formatted(entry.name()));
+        }
+        if (nameLength != entry.rawName().length || !file.slice(header + ZipCentralDirectory.LOCAL_HEADER_LENGTH, nameLength).equals(ByteBuffer.wrap(entry.rawName()))) {
+            throw new ZipException("Local header name does not match the central directory for entry " + entry.name());
+        }
+        return dataEnd;
+    }
+}
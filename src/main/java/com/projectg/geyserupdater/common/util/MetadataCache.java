@@ -0,0 +1,145 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the last response body of the Geyser download API together with its validators, both in memory and on disk.
+ * The validators are used for conditional requests, so that an unchanged build can be answered from the cache.
+ */
+public class MetadataCache {
+    private static final Gson gson = new Gson();
+
+    private final Path file;
+    private boolean loaded = false;
+    private Entry entry;
+    private EndpointResponse response;
+
+    public MetadataCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the ETag of the cached response, or null if there is none
+     */
+    @Nullable
+    public synchronized String etag() {
+        load();
+        return entry == null ? null : entry.etag;
+    }
+
+    /**
+     * @return the Last-Modified value of the cached response, or null if there is none
+     */
+    @Nullable
+    public synchronized String lastModified() {
+        load();
+        return entry == null ? null : entry.lastModified;
+    }
+
+    /**
+     * Get the cached response. The body is only parsed the first time this is called after a cold start.
+     *
+     * @return the cached response, or null if nothing is cached
+     */
+    @Nullable
+    public synchronized EndpointResponse response() {
+        load();
+        if (response == null && entry != null) {
+            try {
+                response = gson.fromJson(entry.body, EndpointResponse.class);
+            } catch (JsonParseException e) {
+                UpdaterLogger.getLogger().warn("缓存的构建元数据已损坏，将被丢弃: " + e.getMessage());
+                clear();
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Replace the cached response and persist it.
+     *
+     * @param etag the ETag header of the response, may be null
+     * @param lastModified the Last-Modified header of the response, may be null
+     * @param body the raw response body
+     * @param parsed the parsed response body
+     */
+    public synchronized void update(@Nullable String etag, @Nullable String lastModified, String body, EndpointResponse parsed) {
+        loaded = true;
+        response = parsed;
+        if (etag == null && lastModified == null) {
+            // Without validators the body can never be revalidated, so there is no point in storing it
+            entry = null;
+            deleteFile();
+            return;
+        }
+        entry = new Entry();
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.body = body;
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法保存构建元数据缓存: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forget the cached response, both in memory and on disk.
+     */
+    public synchronized void clear() {
+        loaded = true;
+        entry = null;
+        response = null;
+        deleteFile();
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Entry read = gson.fromJson(reader, Entry.class);
+            if (read != null && read.body != null) {
+                entry = read;
+            }
+        } catch (IOException | JsonParseException e) {
+            UpdaterLogger.getLogger().warn("无法读取构建元数据缓存: " + e.getMessage());
+        }
+    }
+
+    private void deleteFile() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法删除构建元数据缓存: " + e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        private String etag;
+        private String lastModified;
+        private String body;
+    }
+}
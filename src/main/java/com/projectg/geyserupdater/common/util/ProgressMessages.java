@@ -0,0 +1,53 @@
+package com.projectg.geyserupdater.common.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Turns the progress of an update into messages for the sender of the update command.
+ * Download progress is only reported in steps of {@link #PERCENT_STEP}, so that the sender is not flooded.
+ */
+public class ProgressMessages implements UpdateProgress {
+    private static final int PERCENT_STEP = 10;
+
+    private final Consumer<String> sender;
+
+    // Guarded by this
+    private int lastPercent = 0;
+
+    /**
+     * @param sender sends a message to the sender of the command. It is called from background threads.
+     */
+    public ProgressMessages(Consumer<String> sender) {
+        this.sender = sender;
+    }
+
+    @Override
+    public void stage(Stage stage) {
+        switch (stage) {
+            case DOWNLOADING -> sender.accept(Constants.OUTDATED);
+            case VERIFYING -> sender.accept(Constants.VERIFYING);
+            case STAGED -> sender.accept(Constants.STAGED);
+        }
+    }
+
+    @Override
+    public void downloaded(long bytes, long total) {
+        if (total <= 0) {
+            return;
+        }
+        int percent = (int) (bytes * 100 / total) / PERCENT_STEP * PERCENT_STEP;
+        synchronized (this) {
+            if (bytes == 0) {
+                // The download started over
+                lastPercent = 0;
+                return;
+            }
+            // Counts from several download threads can arrive out of order, so only ever report a higher step
+            if (percent <= lastPercent) {
+                return;
+            }
+            lastPercent = percent;
+        }
+        sender.accept(Constants.DOWNLOAD_PROGRESS.formatted(percent));
+    }
+}
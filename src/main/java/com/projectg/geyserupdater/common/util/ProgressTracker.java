@@ -0,0 +1,182 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the update that is running: its stage, how much has been downloaded, the throughput and the time left.
+ * The latest figures are available as a {@link Snapshot}, are passed on to listeners, and are logged to the console
+ * every {@code Progress-Log-Interval} seconds while a download runs.
+ */
+public class ProgressTracker implements UpdateProgress {
+    /**
+     * How often the throughput is sampled.
+     */
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * The weight of the newest sample in the throughput, which smooths it over the last few seconds.
+     */
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    private final List<UpdateProgress> listeners = new CopyOnWriteArrayList<>();
+
+    // All guarded by this
+    @Nullable
+    private Stage stage;
+    private long startedAt;
+    private long bytes;
+    private long total = -1;
+    private double bytesPerSecond;
+    private long sampledAt;
+    private long sampledBytes;
+    private long loggedAt;
+
+    /**
+     * The progress of an update at one point in time.
+     *
+     * @param stage the current stage
+     * @param bytes the number of bytes of the new build that have been written
+     * @param total the size of the new build in bytes, or -1 if it is unknown
+     * @param bytesPerSecond the recent download throughput, 0 if it is not known yet
+     * @param etaSeconds the estimated number of seconds until the download finishes, or -1 if it is unknown
+     * @param elapsedMillis the time since the update started
+     */
+    public record Snapshot(Stage stage, long bytes, long total, long bytesPerSecond, long etaSeconds, long elapsedMillis) {
+
+        /**
+         * @return the progress in a line of text for the console or a player
+         */
+        public String describe() {
+            if (stage != Stage.DOWNLOADING) {
+                return Constants.STATUS_STAGE.formatted(stage.displayName(), elapsedMillis / 1000);
+            }
+            String eta = etaSeconds < 0 ? "?" : "%d:%02d".formatted(etaSeconds / 60, etaSeconds % 60);
+            return Constants.STATUS_DOWNLOAD.formatted(formatBytes(bytes), total < 0 ? "?" : formatBytes(total),
+                    formatBytes(bytesPerSecond), eta);
+        }
+    }
+
+    /**
+     * Add a listener that receives the progress of every update.
+     *
+     * @param listener the listener, which is called from background threads
+     */
+    public void addListener(UpdateProgress listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with {@link #addListener(UpdateProgress)}.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(UpdateProgress listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Forget the previous update, before a new one starts.
+     */
+    public synchronized void reset() {
+        stage = null;
+        startedAt = System.nanoTime();
+        bytes = 0;
+        total = -1;
+        bytesPerSecond = 0;
+        sampledAt = startedAt;
+        sampledBytes = 0;
+        loggedAt = startedAt;
+    }
+
+    /**
+     * @return the progress of the current or last update, or null if none has started a stage yet
+     */
+    @Nullable
+    public synchronized Snapshot snapshot() {
+        if (stage == null) {
+            return null;
+        }
+        long rate = (long) bytesPerSecond;
+        long eta = rate > 0 && total >= 0 ? Math.max(0, total - bytes) / rate : -1;
+        return new Snapshot(stage, bytes, total, rate, eta, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    @Override
+    public void stage(Stage stage) {
+        synchronized (this) {
+            this.stage = stage;
+        }
+        for (UpdateProgress listener : listeners) {
+            try {
+                listener.stage(stage);
+            } catch (RuntimeException e) {
+                UpdaterLogger.getLogger().error("更新进度监听器发生错误", e);
+            }
+        }
+    }
+
+    @Override
+    public void downloaded(long bytes, long total) {
+        Snapshot toLog = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (bytes < sampledBytes) {
+                // The download started over
+                sampledBytes = bytes;
+                sampledAt = now;
+            } else if (now - sampledAt >= SAMPLE_INTERVAL) {
+                double sample = (bytes - sampledBytes) * 1e9 / (now - sampledAt);
+                bytesPerSecond = bytesPerSecond == 0 ? sample : SAMPLE_WEIGHT * sample + (1 - SAMPLE_WEIGHT) * bytesPerSecond;
+                sampledBytes = bytes;
+                sampledAt = now;
+            }
+            // Counts from several download threads can arrive out of order, so only a restart lowers the count
+            this.bytes = bytes == 0 ? 0 : Math.max(this.bytes, bytes);
+            this.total = total;
+
+            long interval = logInterval();
+            if (interval > 0 && now - loggedAt >= interval) {
+                loggedAt = now;
+                toLog = snapshot();
+            }
+        }
+        if (toLog != null) {
+            UpdaterLogger.getLogger().info(toLog.describe());
+        }
+        for (UpdateProgress listener : listeners) {
+            try {
+                listener.downloaded(bytes, total);
+            } catch (RuntimeException e) {
+                UpdaterLogger.getLogger().error("更新进度监听器发生错误", e);
+            }
+        }
+    }
+
+    /**
+     * @return the interval between progress lines in the console in nanoseconds, 0 if they are disabled
+     */
+    private static long logInterval() {
+        UpdaterConfig config = UpdaterConfig.getConfig();
+        long seconds = config == null ? 10 : config.getLong("Progress-Log-Interval", 10);
+        return TimeUnit.SECONDS.toNanos(Math.max(0, seconds));
+    }
+
+    /**
+     * @return a number of bytes in a human readable unit
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return "%.1f KB".formatted(bytes / 1024.0);
+        }
+        return "%.1f MB".formatted(bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,53 @@
+package com.projectg.geyserupdater.common.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket shared by all threads of a download. Bytes are taken from the bucket as they are received, and a thread
+ * that takes more than the bucket holds sleeps until the bucket has refilled, so that the average rate stays at the limit
+ * while short bursts up to the size of the bucket pass without delay.
+ */
+public class RateLimiter {
+    private static final long MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Guarded by this. May be negative, when threads are waiting for bytes they have already taken.
+    private double tokens = 0;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Take bytes from the bucket, waiting until they are available.
+     *
+     * @param bytes the number of bytes to take
+     * @param bytesPerSecond the rate at which the bucket refills, which must be positive
+     * @param burst the size of the bucket in bytes
+     * @param token cancels the wait
+     * @throws IOException if the wait was cancelled or interrupted
+     */
+    public void acquire(long bytes, long bytesPerSecond, long burst, CancellationToken token) throws IOException {
+        long wait = reserve(bytes, bytesPerSecond, burst);
+        while (wait > 0) {
+            token.throwIfCancelled();
+            long sleep = Math.min(wait, MAX_SLEEP_NANOS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the download rate limit");
+            }
+            wait -= sleep;
+        }
+    }
+
+    /**
+     * @return the time in nanoseconds until the taken bytes are paid for
+     */
+    private synchronized long reserve(long bytes, long bytesPerSecond, long burst) {
+        long now = System.nanoTime();
+        tokens = Math.min(Math.max(burst, 1), tokens + (now - lastRefill) * (bytesPerSecond / 1e9));
+        lastRefill = now;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens / bytesPerSecond * 1e9);
+    }
+}
@@ -0,0 +1,61 @@
+package com.projectg.geyserupdater.common.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when a server answers with {@code 429 Too Many Requests} or {@code 503 Service Unavailable} and says when to try again.
+ */
+public class RetryAfterException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The longest delay that is honoured, so that a misconfigured server cannot stop update checks for good.
+     */
+    private static final long MAX_DELAY = TimeUnit.DAYS.toMillis(1);
+
+    private final long retryAfterMillis;
+
+    public RetryAfterException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return how long to wait before the next request, in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * Parse a {@code Retry-After} header, which holds either a number of seconds or an HTTP date.
+     *
+     * @param header the header value
+     * @return the delay in milliseconds, or -1 if the header is missing or invalid
+     */
+    public static long parseRetryAfter(@Nullable String header) {
+        if (header == null || header.isBlank()) {
+            return -1;
+        }
+        String value = header.trim();
+        try {
+            return Math.min(MAX_DELAY, TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value))));
+        } catch (NumberFormatException ignored) {
+            // Not a number of seconds, so it should be a date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            long millis = Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis();
+            return Math.min(MAX_DELAY, Math.max(0, millis));
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -41,8 +41,8 @@ public class ScriptCreator {
             } else if (OsUtils.isLinux() || OsUtils.isMacos()) {
                 dos.writeBytes("#!/bin/sh\n");
             }
-            // The restart signal from Spigot is being used in the GeyserSpigotDownloader class, which means that a loop in this script is not necessary for spigot.
-            // GeyserBungeeDownloader can only use the stop signal, so a loop must be used to keep the script alive.
+            // The restart signal from Spigot is being used in the SpigotUpdateAdapter class, which means that a loop in this script is not necessary for spigot.
+            // BungeeUpdateAdapter can only use the stop signal, so a loop must be used to keep the script alive.
             if (runLoop) {
                 if (OsUtils.isWindows()) {
                     dos.writeBytes(":restart\n");
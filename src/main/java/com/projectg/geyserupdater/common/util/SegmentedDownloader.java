@@ -0,0 +1,158 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a file as several byte ranges at once, as concurrent requests that share the connections of the {@link HttpTransport},
+ * into a single file using positional writes.
+ */
+public class SegmentedDownloader {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * What a server told us about a file before downloading it.
+     *
+     * @param contentLength the size of the file in bytes
+     * @param validator the ETag or Last-Modified value of the file, may be null
+     */
+    public record Probe(long contentLength, @Nullable String validator) {
+    }
+
+    /**
+     * Check if a file can be downloaded in segments.
+     *
+     * @param fileURL the url of the file
+     * @param token the token of the download
+     * @return the size and validator of the file, or null if the server does not accept range requests for it
+     * @throws IOException if the request failed
+     */
+    @Nullable
+    public static Probe probe(String fileURL, CancellationToken token) throws IOException {
+        HttpTransport transport = HttpTransport.shared();
+        HttpResponse<InputStream> response = transport.send(transport.request(fileURL).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), token);
+        HttpTransport.discard(response);
+        HttpHeaders headers = response.headers();
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+        long contentLength = HttpTransport.contentLength(headers);
+        if (contentLength <= 0 || !"bytes".equalsIgnoreCase(headers.firstValue("Accept-Ranges").orElse(null))) {
+            return null;
+        }
+        return new Probe(contentLength, FileUtils.validatorOf(headers));
+    }
+
+    /**
+     * @param contentLength the size of the file in bytes
+     * @param maxSegments the maximum number of segments
+     * @param minSegmentSize the minimum size of a segment in bytes
+     * @return the number of segments a file of the given size should be split into, 1 if it should not be split
+     */
+    public static int segmentCount(long contentLength, int maxSegments, long minSegmentSize) {
+        long segments = contentLength / Math.max(1, minSegmentSize);
+        return (int) Math.max(1, Math.min(maxSegments, segments));
+    }
+
+    /**
+     * Download a file in segments. The segments are fetched concurrently, so the file is not hashed here.
+     *
+     * @param fileURL the url of the file
+     * @param output the file to write to, which is overwritten
+     * @param probe the result of {@link #probe(String, CancellationToken)} for the file
+     * @param segments the number of segments to split the file into
+     * @param progress counts the bytes of the file as they are written
+     * @throws Exception if any segment failed to download
+     */
+    static void download(String fileURL, Path output, Probe probe, int segments, TransferProgress progress) throws Exception {
+        long length = probe.contentLength();
+        long segmentSize = (length + segments - 1) / segments;
+
+        ExecutorService executor = Executors.newFixedThreadPool(segments, runnable -> {
+            Thread thread = new Thread(runnable, "GeyserUpdater Download Thread #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileUtils.preallocate(channel, length);
+            progress.start(0, length);
+            List<Future<?>> futures = new ArrayList<>();
+            for (long start = 0; start < length; start += segmentSize) {
+                long first = start;
+                long last = Math.min(length, start + segmentSize) - 1;
+                futures.add(executor.submit(() -> {
+                    fetchRange(fileURL, channel, first, last, probe.validator(), progress);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(other -> other.cancel(true));
+                    if (e.getCause() instanceof Exception cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+            if (channel.size() != length) {
+                throw new IOException("Expected %d bytes but the file has %d bytes".formatted(length, channel.size()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static void fetchRange(String fileURL, FileChannel channel, long first, long last, @Nullable String validator, TransferProgress progress) throws IOException {
+        UpdaterLogger.getLogger().trace("下载分段 %d-%d".formatted(first, last));
+        HttpRequest.Builder request = HttpTransport.shared().request(fileURL).header("Range", "bytes=" + first + "-" + last);
+        if (validator != null) {
+            // If the file changed since it was probed, we get the whole file back, which is rejected below
+            request.header("If-Range", validator);
+        }
+
+        HttpResponse<InputStream> response = HttpTransport.shared().sendDownload(request.build(), progress.token());
+        int responseCode = response.statusCode();
+        String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL || contentRange == null || !contentRange.trim().startsWith("bytes " + first + "-")) {
+            HttpTransport.discard(response);
+            throw new IOException("Received %s instead of the range %d-%d from GET of %s".formatted(responseCode, first, last, fileURL));
+        }
+
+        long position = first;
+        try (InputStream input = response.body()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while (position <= last && (read = input.read(buffer, 0, (int) Math.min(buffer.length, last + 1 - position))) != -1) {
+                ByteBuffer wrapped = ByteBuffer.wrap(buffer, 0, read);
+                while (wrapped.hasRemaining()) {
+                    position += channel.write(wrapped, position);
+                }
+                progress.received(read);
+            }
+        }
+        if (position != last + 1) {
+            throw new EOFException("Connection closed after %d of %d bytes of segment %d-%d".formatted(position - first, last + 1 - first, first, last));
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.projectg.geyserupdater.common.util;
 
 public enum ServerPlatform {
-    SPIGOT("spigot"),
-    BUNGEECORD("bungeecord"),
-    VELOCITY("velocity");
+    SPIGOT("spigot", "plugin.yml"),
+    BUNGEECORD("bungeecord", "bungee.yml"),
+    VELOCITY("velocity", "velocity-plugin.json");
 
     private final String urlComponent;
+    private final String descriptorFile;
 
-    ServerPlatform(String urlComponent) {
+    ServerPlatform(String urlComponent, String descriptorFile) {
         this.urlComponent = urlComponent;
+        this.descriptorFile = descriptorFile;
     }
 
     public String getUrlComponent() {
         return urlComponent;
     }
-}
 
+    /**
+     * @return the name of the plugin descriptor that a Geyser jar for this platform must contain
+     */
+    public String getDescriptorFile() {
+        return descriptorFile;
+    }
+}
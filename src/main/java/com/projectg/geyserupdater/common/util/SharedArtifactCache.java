@@ -0,0 +1,247 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A directory of verified Geyser jars shared by every GeyserUpdater instance on a host.
+ * Instances take an OS file lock on {@code <sha256>.lock} before downloading a build, so that only one of them downloads it
+ * while the others wait and then link or copy the published jar.
+ */
+public class SharedArtifactCache {
+
+    /**
+     * How long to wait for another instance to finish downloading before downloading anyway.
+     */
+    private static final long LOCK_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    private static final long LOCK_POLL_INTERVAL = 500;
+
+    /**
+     * The number of jars kept in the directory. Older builds are removed when a new one is published.
+     */
+    private static final int KEEP_JARS = 3;
+
+    /**
+     * File locks are held by the whole JVM, so concurrent fetches within this server are serialized here instead.
+     */
+    private static final ReentrantLock jvmLock = new ReentrantLock();
+
+    private final Path directory;
+
+    public SharedArtifactCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get a jar from the shared cache. The jar is hashed before it is returned.
+     *
+     * @param sha256 the sha256 of the jar
+     * @return the path of the jar, or null if it is not in the cache or does not match its hash
+     */
+    @Nullable
+    public Path get(String sha256) {
+        Path file = fileOf(sha256);
+        try {
+            if (Files.isRegularFile(file) && FileUtils.sha256(file).equalsIgnoreCase(sha256)) {
+                return file;
+            }
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法读取共享缓存中的 %s: %s".formatted(file, e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Publish a verified jar for the other instances on this host. The caller holds the lock of the build from
+     * {@link #lock(String, CancellationToken)}, so the instances waiting for it find the jar once they get the lock.
+     * The jar is moved into place in one step, so an instance never reads a partial file.
+     *
+     * @param sha256 the sha256 the caller verified the jar against
+     * @param file the jar
+     */
+    public void put(String sha256, Path file) {
+        Path target = fileOf(sha256);
+        Path temp = directory.resolve(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            FileUtils.linkOrCopy(file, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            prune();
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().warn("无法将 %s 保存到共享缓存: %s".formatted(file, e.getMessage()));
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Take the host-wide lock for a build. This blocks while another instance holds it, for up to {@link #LOCK_TIMEOUT}.
+     * If the lock cannot be taken in that time, or the file system does not support locks, the returned handle holds
+     * no file lock and the caller proceeds on its own.
+     *
+     * @param sha256 the sha256 of the build
+     * @param token stops the wait
+     * @return a handle that releases the lock when closed
+     * @throws IOException if the lock file could not be created or the wait was interrupted
+     * @throws CancellationToken.CancelledException if the token was cancelled while waiting
+     */
+    public Closeable lock(String sha256, CancellationToken token) throws IOException {
+        lockJvm(token);
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(directory.resolve(sha256.toLowerCase(Locale.ROOT) + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = acquire(channel, token);
+            FileChannel opened = channel;
+            return () -> {
+                try {
+                    if (lock != null) {
+                        lock.release();
+                    }
+                    opened.close();
+                } finally {
+                    jvmLock.unlock();
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Take {@link #jvmLock}, checking the token while another fetch in this server holds it.
+     */
+    private static void lockJvm(CancellationToken token) throws IOException {
+        try {
+            while (!jvmLock.tryLock(LOCK_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                token.throwIfCancelled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the shared cache lock");
+        }
+    }
+
+    @Nullable
+    private FileLock acquire(FileChannel channel, CancellationToken token) throws IOException {
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT;
+        boolean waiting = false;
+        while (true) {
+            token.throwIfCancelled();
+            try {
+                FileLock lock = channel.tryLock();
+                if (lock != null) {
+                    return lock;
+                }
+            } catch (OverlappingFileLockException e) {
+                // Held by another plugin instance in this JVM, treat it like another process
+            } catch (IOException e) {
+                UpdaterLogger.getLogger().debug("共享缓存目录不支持文件锁: " + e.getMessage());
+                return null;
+            }
+            if (!waiting) {
+                UpdaterLogger.getLogger().info("另一个服务器正在下载此 Geyser 版本，正在等待它完成...");
+                waiting = true;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                UpdaterLogger.getLogger().warn("等待共享缓存超时，将自行下载。");
+                return null;
+            }
+            try {
+                Thread.sleep(LOCK_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the shared cache lock");
+            }
+        }
+    }
+
+    /**
+     * Remove all but the newest {@link #KEEP_JARS} jars, with their lock files.
+     */
+    private void prune() throws IOException {
+        List<Path> jars;
+        try (Stream<Path> files = Files.list(directory)) {
+            jars = files.filter(path -> path.getFileName().toString().endsWith(".jar"))
+                    .sorted(Comparator.comparingLong(SharedArtifactCache::lastModified).reversed())
+                    .collect(Collectors.toList());
+        }
+        for (Path old : jars.subList(Math.min(KEEP_JARS, jars.size()), jars.size())) {
+            evict(old);
+        }
+    }
+
+    /**
+     * Delete a jar and its lock file while holding the lock of its build. A build whose lock is held by another
+     * instance is in use and is kept until a later prune.
+     */
+    private void evict(Path jar) {
+        String name = jar.getFileName().toString();
+        Path lockFile = directory.resolve(name.substring(0, name.length() - ".jar".length()) + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = null;
+            try {
+                lock = channel.tryLock();
+                if (lock == null) {
+                    return;
+                }
+            } catch (OverlappingFileLockException e) {
+                // Held by another plugin instance in this JVM
+                return;
+            } catch (IOException e) {
+                // The file system does not support locks, so neither does lock(String, CancellationToken)
+            }
+            try {
+                Files.deleteIfExists(jar);
+                Files.deleteIfExists(lockFile);
+            } finally {
+                if (lock != null) {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            UpdaterLogger.getLogger().debug("无法删除共享缓存中的 %s: %s".formatted(jar, e.getMessage()));
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path fileOf(String sha256) {
+        return directory.resolve(sha256.toLowerCase(Locale.ROOT) + ".jar");
+    }
+}
@@ -4,11 +4,12 @@ import com.projectg.geyserupdater.common.logger.UpdaterLogger;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.util.Scanner;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
 
 public class SpigotResourceUpdateChecker {
 
+    private static final String SPIGOT_RESOURCE_URL = "https://api.spigotmc.org/legacy/update.php?resource=88555";
     private static final String VERSION_REGEX = "(\\d+.){1,2}\\d+";
 
     /**
@@ -17,12 +18,15 @@ public class SpigotResourceUpdateChecker {
      */
     public static String getVersion() {
 
-        try (InputStream inputStream = new URL("https://api.spigotmc.org/legacy/update.php?resource=88555").openStream(); Scanner scanner = new Scanner(inputStream)) {
-            StringBuilder builder = new StringBuilder();
-            while (scanner.hasNext()) {
-                builder.append(scanner.next());
+        HttpTransport transport = HttpTransport.shared();
+        try {
+            HttpResponse<InputStream> response = transport.send(transport.request(SPIGOT_RESOURCE_URL).build());
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                HttpTransport.discard(response);
+                UpdaterLogger.getLogger().error("检查更新失败: Received %s from GET of %s".formatted(response.statusCode(), SPIGOT_RESOURCE_URL));
+                return null;
             }
-            String version = builder.toString();
+            String version = HttpTransport.readString(response).replaceAll("\\s", "");
             if (version.matches(VERSION_REGEX)) {
                 return version;
             } else {
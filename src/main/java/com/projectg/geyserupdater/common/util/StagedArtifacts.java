@@ -0,0 +1,195 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks whether staged Geyser jars exist, per path.
+ * <p>
+ * The state of each path is kept in a concurrent map, so that {@link #isStaged(Path)} is a lock-free read without any
+ * file system calls. The map is kept up to date by a {@link WatchService} on the directories of the watched paths, and by
+ * explicit calls to {@link #refresh(Path)} from code that changes a staged file.
+ */
+public class StagedArtifacts {
+    private static final Map<Path, Boolean> states = new ConcurrentHashMap<>();
+    private static final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private static final Map<Path, List<Runnable>> listeners = new ConcurrentHashMap<>();
+
+    // Guarded by the class lock
+    private static WatchService watchService;
+
+    /**
+     * Check if a file is staged. The first call for a path starts watching it.
+     *
+     * @param file the staged file
+     * @return true if the file exists
+     */
+    public static boolean isStaged(Path file) {
+        Boolean state = states.get(normalize(file));
+        return state != null ? state : watch(file);
+    }
+
+    /**
+     * Start watching a file. Its directory is created if it does not exist yet.
+     *
+     * @param file the file to watch
+     * @return true if the file exists
+     */
+    public static synchronized boolean watch(Path file) {
+        Path path = normalize(file);
+        Path directory = path.getParent();
+        try {
+            Files.createDirectories(directory);
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(StagedArtifacts::run, "GeyserUpdater Staging Watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            if (!directories.containsValue(directory)) {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, directory);
+            }
+        } catch (IOException e) {
+            // Still tracked, but only explicit refreshes will update it
+            UpdaterLogger.getLogger().debug("无法监视 %s: %s".formatted(directory, e.getMessage()));
+        }
+        boolean[] changed = new boolean[1];
+        boolean exists = states.compute(path, (key, old) -> {
+            boolean now = Files.isRegularFile(key);
+            changed[0] = old != null && old != now;
+            return now;
+        });
+        if (changed[0]) {
+            fire(path);
+        }
+        return exists;
+    }
+
+    /**
+     * Update the state of a file after changing it, instead of waiting for the watch service to notice.
+     * Files that are not watched are ignored.
+     *
+     * @param file the file that changed
+     */
+    public static void refresh(Path file) {
+        Path path = normalize(file);
+        boolean[] changed = new boolean[1];
+        // Computing inside the map makes concurrent refreshes of one path apply in order, readers are not blocked
+        states.computeIfPresent(path, (key, old) -> {
+            boolean now = Files.isRegularFile(key);
+            changed[0] = old != now;
+            return now;
+        });
+        if (changed[0]) {
+            fire(path);
+        }
+    }
+
+    /**
+     * Add a listener that is called whenever a file becomes staged or stops being staged. Listeners are called on the thread
+     * that noticed the change, and should read the new state with {@link #isStaged(Path)}.
+     *
+     * @param file the file to listen to
+     * @param listener the listener
+     */
+    public static void addListener(Path file, Runnable listener) {
+        listeners.computeIfAbsent(normalize(file), key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Remove a listener added with {@link #addListener(Path, Runnable)}.
+     *
+     * @param file the file the listener was added for
+     * @param listener the listener
+     */
+    public static void removeListener(Path file, Runnable listener) {
+        List<Runnable> list = listeners.get(normalize(file));
+        if (list != null) {
+            list.remove(listener);
+        }
+    }
+
+    private static void fire(Path path) {
+        for (Runnable listener : listeners.getOrDefault(path, List.of())) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                UpdaterLogger.getLogger().error("处理 %s 的状态变化时发生错误".formatted(path), e);
+            }
+        }
+    }
+
+    /**
+     * Stop watching all files, remove all listeners, and stop the watcher thread.
+     */
+    public static synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                UpdaterLogger.getLogger().debug("无法关闭文件监视服务: " + e.getMessage());
+            }
+            watchService = null;
+        }
+        directories.clear();
+        states.clear();
+        listeners.clear();
+    }
+
+    private static void run() {
+        WatchService service;
+        synchronized (StagedArtifacts.class) {
+            service = watchService;
+        }
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (directory == null) {
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        refreshDirectory(directory);
+                    } else {
+                        refresh(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset() && directory != null) {
+                    // The directory was deleted. It is registered again by the next call to watch().
+                    directories.remove(key);
+                    refreshDirectory(directory);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            UpdaterLogger.getLogger().debug("文件监视服务已停止。");
+        }
+    }
+
+    private static void refreshDirectory(Path directory) {
+        for (Path path : states.keySet()) {
+            if (directory.equals(path.getParent())) {
+                refresh(path);
+            }
+        }
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,83 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class of the join listeners that tell admins about a staged Geyser jar.
+ * <p>
+ * The platform listener is only registered while the jar is staged, so logins cost nothing while there is no update.
+ * Admins are only told once per staged jar.
+ */
+public abstract class StagedUpdateNotifier {
+    private final Path stagedJar;
+    private final Set<UUID> notified = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private boolean registered = false;
+
+    /**
+     * @param stagedJar the path that the new Geyser jar is staged at
+     */
+    protected StagedUpdateNotifier(Path stagedJar) {
+        this.stagedJar = stagedJar;
+    }
+
+    /**
+     * Register the platform listener.
+     */
+    protected abstract void register();
+
+    /**
+     * Unregister the platform listener.
+     */
+    protected abstract void unregister();
+
+    /**
+     * Start registering and unregistering the listener as the jar is staged and applied. This stops when
+     * {@link StagedArtifacts#close()} is called.
+     */
+    public void start() {
+        StagedArtifacts.addListener(stagedJar, this::update);
+        update();
+    }
+
+    private synchronized void update() {
+        // Read the current state rather than trusting the event, so that changes that race each other settle on the latest one
+        boolean staged = StagedArtifacts.isStaged(stagedJar);
+        if (staged && !registered) {
+            notified.clear();
+            register();
+            registered = true;
+            UpdaterLogger.getLogger().debug("已注册更新通知监听器。");
+        } else if (!staged && registered) {
+            unregister();
+            registered = false;
+            UpdaterLogger.getLogger().debug("已注销更新通知监听器。");
+        }
+    }
+
+    /**
+     * Check if a player may still need to be told about the staged jar, before doing any permission lookup.
+     *
+     * @param uuid the player
+     * @return false if the player has already been told
+     */
+    protected boolean shouldNotify(UUID uuid) {
+        return !notified.contains(uuid);
+    }
+
+    /**
+     * Remember that a player has been told about the staged jar.
+     *
+     * @param uuid the player
+     * @return true if the player had not been told yet
+     */
+    protected boolean markNotified(UUID uuid) {
+        return notified.add(uuid);
+    }
+}
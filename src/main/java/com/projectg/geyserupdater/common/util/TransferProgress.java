@@ -0,0 +1,60 @@
+package com.projectg.geyserupdater.common.util;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of a download written by any number of threads, and passes the count on to an {@link UpdateProgress}.
+ * It also carries the {@link CancellationToken} of the download, which is checked whenever bytes are counted.
+ */
+class TransferProgress {
+    private final UpdateProgress progress;
+    private final CancellationToken token;
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long total = -1;
+
+    TransferProgress(UpdateProgress progress, CancellationToken token) {
+        this.progress = progress;
+        this.token = token;
+    }
+
+    /**
+     * @return the token of the download
+     */
+    CancellationToken token() {
+        return token;
+    }
+
+    /**
+     * Start counting a new transfer.
+     *
+     * @param done the number of bytes that are already written, for example by an earlier attempt
+     * @param total the size of the file in bytes, or -1 if it is unknown
+     */
+    void start(long done, long total) {
+        this.total = total;
+        bytes.set(done);
+        progress.downloaded(done, total);
+    }
+
+    /**
+     * Count bytes that were received from the network and written. They are counted towards the monthly data usage,
+     * and this waits as long as the rate limit requires.
+     *
+     * @param count the number of bytes that were just written
+     * @throws IOException if the download has been cancelled
+     */
+    void received(long count) throws IOException {
+        Bandwidth.consume(count, token);
+        add(count);
+    }
+
+    /**
+     * @param count the number of bytes that were just written
+     * @throws CancellationToken.CancelledException if the download has been cancelled
+     */
+    void add(long count) throws IOException {
+        progress.downloaded(bytes.addAndGet(count), total);
+        token.throwIfCancelled();
+    }
+}
@@ -0,0 +1,84 @@
+package com.projectg.geyserupdater.common.util;
+
+/**
+ * Receives the progress of a Geyser update as it is checked for, downloaded, verified and staged.
+ * Methods may be called from any thread, including several download threads at once.
+ */
+public interface UpdateProgress {
+
+    /**
+     * An instance that ignores all progress.
+     */
+    UpdateProgress NONE = new UpdateProgress() {};
+
+    enum Stage {
+        /**
+         * Connecting to the download server to check for a new build.
+         */
+        CHECKING("正在检查更新"),
+        /**
+         * Transferring the new build.
+         */
+        DOWNLOADING("正在下载"),
+        /**
+         * Hashing and validating the downloaded build.
+         */
+        VERIFYING("正在验证"),
+        /**
+         * The new build is staged, and will be used after a restart.
+         */
+        STAGED("已就绪");
+
+        private final String displayName;
+
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * @return the name of the stage for players and the console
+         */
+        public String displayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * @param progresses the instances to pass progress on to
+     * @return an instance that passes all progress on to each of the given instances, in order
+     */
+    static UpdateProgress all(UpdateProgress... progresses) {
+        return new UpdateProgress() {
+            @Override
+            public void stage(Stage stage) {
+                for (UpdateProgress progress : progresses) {
+                    progress.stage(stage);
+                }
+            }
+
+            @Override
+            public void downloaded(long bytes, long total) {
+                for (UpdateProgress progress : progresses) {
+                    progress.downloaded(bytes, total);
+                }
+            }
+        };
+    }
+
+    /**
+     * Called when the update moves on to a new stage.
+     *
+     * @param stage the new stage
+     */
+    default void stage(Stage stage) {
+    }
+
+    /**
+     * Called as the new build is being downloaded. The byte count drops back if the download has to start over.
+     *
+     * @param bytes the number of bytes of the build that have been written
+     * @param total the size of the build in bytes, or -1 if it is unknown
+     */
+    default void downloaded(long bytes, long total) {
+    }
+}
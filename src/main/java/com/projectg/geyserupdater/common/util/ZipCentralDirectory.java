@@ -0,0 +1,291 @@
+package com.projectg.geyserupdater.common.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip file without inflating any of its entries.
+ */
+public class ZipCentralDirectory {
+    public static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    public static final int LOCAL_HEADER_LENGTH = 30;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_LENGTH = 56;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * The number of bytes at the end of a zip file that can contain the end of central directory records.
+     */
+    public static final int MAX_TAIL_LENGTH = END_LENGTH + 0xFFFF + ZIP64_LOCATOR_LENGTH + ZIP64_END_LENGTH;
+
+    /**
+     * The location of the central directory.
+     *
+     * @param offset the offset of the central directory in the file
+     * @param size the size of the central directory in bytes
+     * @param entries the number of entries in the central directory
+     */
+    public record End(long offset, long size, long entries) {
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    public record Entry(String name, byte[] rawName, byte[] extra, int versionNeeded, int flags, int method, int time,
+                        int date, long crc, long compressedSize, long size, long localHeaderOffset) {
+
+        /**
+         * @return true if the sizes and crc of the entry follow its data, instead of being in the local header
+         */
+        public boolean hasDataDescriptor() {
+            return (flags & 0x08) != 0;
+        }
+
+        /**
+         * @return true if the entry needs zip64 fields
+         */
+        public boolean isZip64() {
+            return compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC || localHeaderOffset >= ZIP64_MAGIC;
+        }
+    }
+
+    /**
+     * Find the end of central directory record of a zip file.
+     *
+     * @param channel the channel of the file. Only the last {@link #MAX_TAIL_LENGTH} bytes are read.
+     * @param length the length of the file
+     * @return the location of the central directory
+     * @throws IOException if the file could not be read, or is not a zip file
+     */
+    public static End readEnd(FileChannel channel, long length) throws IOException {
+        return readEnd((position, size) -> read(channel, position, size), length);
+    }
+
+    /**
+     * Find the end of central directory record of a zip file.
+     *
+     * @param file a buffer that holds the whole file, such as a mapped file
+     * @return the location of the central directory
+     * @throws IOException if the buffer is not a zip file
+     */
+    public static End readEnd(ByteBuffer file) throws IOException {
+        return readEnd(slicer(file), file.limit());
+    }
+
+    /**
+     * Read all entries of a central directory.
+     *
+     * @param channel the channel of the file
+     * @param end the location of the central directory, as returned by {@link #readEnd(FileChannel, long)}
+     * @return the entries, in the order of the central directory
+     * @throws IOException if the file could not be read, or the central directory is malformed
+     */
+    public static List<Entry> readEntries(FileChannel channel, End end) throws IOException {
+        return readDirectory(read(channel, end.offset(), directorySize(end)), end);
+    }
+
+    /**
+     * Read all entries of a central directory.
+     *
+     * @param file a buffer that holds the whole file, such as a mapped file
+     * @param end the location of the central directory, as returned by {@link #readEnd(ByteBuffer)}
+     * @return the entries, in the order of the central directory
+     * @throws IOException if the central directory is malformed
+     */
+    public static List<Entry> readEntries(ByteBuffer file, End end) throws IOException {
+        return readDirectory(slicer(file).read(end.offset(), directorySize(end)), end);
+    }
+
+    private static End readEnd(Source source, long length) throws IOException {
+        int tailLength = (int) Math.min(length, MAX_TAIL_LENGTH);
+        long tailStart = length - tailLength;
+        ByteBuffer tail = source.read(tailStart, tailLength);
+
+        for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) != END_SIGNATURE || i + END_LENGTH + u16(tail, i + 20) > tailLength) {
+                continue;
+            }
+            long entries = u16(tail, i + 10);
+            long size = u32(tail, i + 12);
+            long offset = u32(tail, i + 16);
+            if (entries == 0xFFFF || size == ZIP64_MAGIC || offset == ZIP64_MAGIC) {
+                int locator = i - ZIP64_LOCATOR_LENGTH;
+                if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                    throw new ZipException("Missing zip64 end of central directory locator");
+                }
+                ByteBuffer zip64End = source.read(tail.getLong(locator + 8), ZIP64_END_LENGTH);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid zip64 end of central directory record");
+                }
+                entries = zip64End.getLong(32);
+                size = zip64End.getLong(40);
+                offset = zip64End.getLong(48);
+            }
+            if (offset < 0 || size < 0 || offset + size > tailStart + i) {
+                throw new ZipException("Central directory is out of bounds");
+            }
+            return new End(offset, size, entries);
+        }
+        throw new ZipException("End of central directory record not found");
+    }
+
+    private static int directorySize(End end) throws ZipException {
+        if (end.size() > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory is too large");
+        }
+        return (int) end.size();
+    }
+
+    /**
+     * Read all entries of a central directory.
+     *
+     * @param directory a little-endian buffer that holds exactly the central directory
+     * @param end the location of the central directory
+     * @return the entries, in the order of the central directory
+     * @throws ZipException if the central directory is malformed
+     */
+    private static List<Entry> readDirectory(ByteBuffer directory, End end) throws ZipException {
+        List<Entry> entries = new ArrayList<>();
+        int position = 0;
+        int limit = directory.limit();
+        while (position < limit) {
+            if (position + CENTRAL_HEADER_LENGTH > limit || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry at offset " + (end.offset() + position));
+            }
+            int nameLength = u16(directory, position + 28);
+            int extraLength = u16(directory, position + 30);
+            int commentLength = u16(directory, position + 32);
+            int next = position + CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+            if (next > limit) {
+                throw new ZipException("Central directory entry at offset %d is out of bounds".formatted(end.offset() + position));
+            }
+
+            byte[] rawName = new byte[nameLength];
+            directory.get(position + CENTRAL_HEADER_LENGTH, rawName);
+            byte[] extra = new byte[extraLength];
+            directory.get(position + CENTRAL_HEADER_LENGTH + nameLength, extra);
+
+            long size = u32(directory, position + 24);
+            long compressedSize = u32(directory, position + 20);
+            long localHeaderOffset = u32(directory, position + 42);
+            if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                // The real values are in the zip64 extra field, in this order, but only if the regular field is maxed out
+                ByteBuffer zip64 = findExtra(extra, ZIP64_EXTRA_ID);
+                if (zip64 == null) {
+                    throw new ZipException("Missing zip64 extra field for entry " + new String(rawName, StandardCharsets.UTF_8));
+                }
+                if (size == ZIP64_MAGIC) {
+                    size = zip64.getLong();
+                }
+                if (compressedSize == ZIP64_MAGIC) {
+                    compressedSize = zip64.getLong();
+                }
+                if (localHeaderOffset == ZIP64_MAGIC) {
+                    localHeaderOffset = zip64.getLong();
+                }
+            }
+
+            entries.add(new Entry(
+                    new String(rawName, StandardCharsets.UTF_8),
+                    rawName,
+                    extra,
+                    u16(directory, position + 6),
+                    u16(directory, position + 8),
+                    u16(directory, position + 10),
+                    u16(directory, position + 12),
+                    u16(directory, position + 14),
+                    u32(directory, position + 16),
+                    compressedSize,
+                    size,
+                    localHeaderOffset
+            ));
+            position = next;
+        }
+        if (entries.size() != end.entries()) {
+            throw new ZipException("Expected %d central directory entries but found %d".formatted(end.entries(), entries.size()));
+        }
+        return entries;
+    }
+
+    /**
+     * Get the offset of the data of an entry, by reading its local header.
+     *
+     * @param channel the channel of the file
+     * @param entry the entry
+     * @return the offset of the first byte of the entry's data
+     * @throws IOException if the file could not be read, or the local header is invalid
+     */
+    public static long dataOffset(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = read(channel, entry.localHeaderOffset(), LOCAL_HEADER_LENGTH);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for entry " + entry.name());
+        }
+        return entry.localHeaderOffset() + LOCAL_HEADER_LENGTH + u16(header, 26) + u16(header, 28);
+    }
+
+    private static ByteBuffer findExtra(byte[] extra, int id) {
+        ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= 4) {
+            int headerId = buffer.getShort() & 0xFFFF;
+            int dataLength = buffer.getShort() & 0xFFFF;
+            if (dataLength > buffer.remaining()) {
+                return null;
+            }
+            if (headerId == id) {
+                return buffer.slice(buffer.position(), dataLength).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.position(buffer.position() + dataLength);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a range of a zip file as a little-endian buffer.
+     */
+    @FunctionalInterface
+    private interface Source {
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    private static Source slicer(ByteBuffer file) {
+        return (position, length) -> {
+            if (position < 0 || position + length > file.limit()) {
+                throw new EOFException("Unexpected end of zip file at offset " + position);
+            }
+            return file.slice((int) position, length).order(ByteOrder.LITTLE_ENDIAN);
+        };
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("Unexpected end of zip file at offset " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    static int u16(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    static long u32(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+}
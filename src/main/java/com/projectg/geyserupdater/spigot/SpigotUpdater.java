@@ -1,13 +1,20 @@
 package com.projectg.geyserupdater.spigot;
 
+import com.projectg.geyserupdater.common.UpdateService;
 import com.projectg.geyserupdater.common.logger.JavaUtilUpdaterLogger;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.common.metrics.PrometheusExporter;
+import com.projectg.geyserupdater.common.metrics.UpdaterJmx;
+import com.projectg.geyserupdater.common.util.Bandwidth;
 import com.projectg.geyserupdater.common.util.FileUtils;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.util.JarValidator;
+import com.projectg.geyserupdater.common.util.ServerPlatform;
+import com.projectg.geyserupdater.common.util.StagedArtifacts;
 import com.projectg.geyserupdater.spigot.command.GeyserUpdateCommand;
+import com.projectg.geyserupdater.spigot.config.BukkitUpdaterConfig;
 import com.projectg.geyserupdater.spigot.listeners.SpigotJoinListener;
 import com.projectg.geyserupdater.spigot.util.CheckSpigotRestart;
-import com.projectg.geyserupdater.spigot.util.GeyserSpigotDownloader;
+import com.projectg.geyserupdater.spigot.util.SpigotUpdateAdapter;
 import com.projectg.geyserupdater.common.util.SpigotResourceUpdateChecker;
 import com.projectg.geyserupdater.spigot.util.bstats.Metrics;
 
@@ -20,10 +27,18 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class SpigotUpdater extends JavaPlugin {
     private static SpigotUpdater plugin;
+    private ScheduledExecutorService scheduler;
+    private UpdateService updateService;
 
     @Override
     public void onEnable() {
@@ -32,6 +47,7 @@ public class SpigotUpdater extends JavaPlugin {
         new Metrics(this, 10202);
 
         loadConfig();
+        new BukkitUpdaterConfig(getConfig());
         if (getConfig().getBoolean("Enable-Debug", false)) {
             UpdaterLogger.getLogger().info("尝试启用调试日志记录。 汉化自柠檬汉化组:https://github.com/ningmeng-i18n");
             UpdaterLogger.getLogger().enableDebug();
@@ -41,10 +57,25 @@ public class SpigotUpdater extends JavaPlugin {
         // Check our version
         checkUpdaterVersion();
 
+        // Timed tasks run on wall clock time off the main thread, so that slow HTTP or low TPS cannot affect them
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GeyserUpdater Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        SpigotUpdateAdapter adapter = new SpigotUpdateAdapter(this);
+        // todo: make sure we use the update folder defined in bukkit.yml (it can be changed)
+        updateService = new UpdateService(ServerPlatform.SPIGOT, Paths.get("plugins/update/Geyser-Spigot.jar"), null, adapter, adapter);
+        // Expose the updater's state and timings to JMX tools, and to Prometheus if enabled
+        UpdaterJmx.register(updateService);
+        PrometheusExporter.start(updateService);
+
         Objects.requireNonNull(getCommand("geyserupdate")).setExecutor(new GeyserUpdateCommand());
         getCommand("geyserupdate").setPermission("gupdater.geyserupdate");
-        // Player alert if a restart is required when they join
-        Bukkit.getServer().getPluginManager().registerEvents(new SpigotJoinListener(), this);
+        // Track the staged Geyser jar, so that checking it is free
+        StagedArtifacts.watch(Paths.get("plugins/update/Geyser-Spigot.jar"));
+        // Player alert if a restart is required when they join, registered only while an update is staged
+        new SpigotJoinListener().start();
 
         // Check if a restart script already exists
         // We create one if it doesn't
@@ -59,16 +90,29 @@ public class SpigotUpdater extends JavaPlugin {
         if (getConfig().getBoolean("Auto-Update-Geyser")) {
             scheduleAutoUpdate();
         }
-        // Enable File Checking here. delay of 30 minutes and period of 12 hours (given in ticks)
-        new BukkitRunnable() {
-
-            @Override
-            public void run() {
-                if (FileUtils.checkFile("plugins/update/Geyser-Spigot.jar", false)) {
-                    UpdaterLogger.getLogger().info("已下载新的 Geyser 版本！请重启服务器以使用更新后的版本！ ");
-                }
+        // Enable File Checking here. delay of 30 minutes and period of 12 hours
+        scheduler.scheduleAtFixedRate(() -> {
+            if (StagedArtifacts.isStaged(Paths.get("plugins/update/Geyser-Spigot.jar"))) {
+                UpdaterLogger.getLogger().info("已下载新的 Geyser 版本！请重启服务器以使用更新后的版本！ ");
             }
-        }.runTaskTimerAsynchronously(this, 30 * 60 * 20, 12 * 60 * 60 * 20);
+        }, 30, 12 * 60, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void onDisable() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // Bukkit swaps in the jar from the update folder on the next start, so make sure it is not damaged
+        Path staged = Paths.get("plugins/update/Geyser-Spigot.jar");
+        if (Files.isRegularFile(staged) && !JarValidator.isValid(staged, ServerPlatform.SPIGOT)) {
+            UpdaterLogger.getLogger().error("已删除损坏的 Geyser 更新，服务器将继续使用当前版本。");
+            FileUtils.deleteQuietly(staged);
+        }
+        UpdaterJmx.unregister();
+        PrometheusExporter.stop();
+        StagedArtifacts.close();
+        Bandwidth.save();
     }
 
     /**
@@ -93,7 +137,7 @@ public class SpigotUpdater extends JavaPlugin {
      */
     public void checkConfigVersion() {
         //Change version number only when editing config.yml!
-        if (getConfig().getInt("Config-Version", 0) != 2) {
+        if (getConfig().getInt("Config-Version", 0) != 3) {
             UpdaterLogger.getLogger().warn("您的 config.yml 文件已过时。请删除它，并让系统生成一个新的 config.yml 文件！ ");
         }
     }
@@ -122,28 +166,30 @@ public class SpigotUpdater extends JavaPlugin {
     }
 
     /**
-     * Check for a newer version of Geyser every 24hrs
+     * Check for a newer version of Geyser about every Auto-Update-Interval hours, on a wall clock scheduler off the main thread.
+     * See {@link com.projectg.geyserupdater.common.PollingPolicy}
      */
     public void scheduleAutoUpdate() {
         UpdaterLogger.getLogger().debug("尝试启用自动更新");
-        // todo: build this in different way so that we don't repeat it if the Auto-Update-Interval is zero or -1 or something
-        new BukkitRunnable() {
+        long interval = getConfig().getLong("Auto-Update-Interval", 24L);
+        if (interval <= 0) {
+            UpdaterLogger.getLogger().warn("Auto-Update-Interval 必须大于 0！已禁用自动更新。 ");
+            return;
+        }
+        // The update service does its blocking HTTP on the scheduler thread, and hops to the main thread to message players.
+        // It schedules each check itself, with jitter and backoff. Auto-Update-Interval is in hours.
+        updateService.startAutoUpdate(TimeUnit.HOURS.toMillis(interval));
+    }
 
-            @Override
-            public void run() {
-                UpdaterLogger.getLogger().debug("检查是否存在新的 Geyser 版本。");
-                try {
-                    boolean isLatest = GeyserProperties.isLatestBuild();
-                    if (!isLatest) {
-                        UpdaterLogger.getLogger().info("有新的 Geyser 版本可用！正在尝试下载最新版本... ");
-                        GeyserSpigotDownloader.updateGeyser();
-                    }
-                } catch (Exception e) {
-                    UpdaterLogger.getLogger().error("检查 Geyser 更新失败！我们无法连接到 Geyser 构建服务器，或者您的本地分支在服务器上不存在。 ", e);
-                }
-                // Auto-Update-Interval is in hours. We convert it into ticks
-            }
-        }.runTaskTimer(this, 60 * 20, getConfig().getLong("Auto-Update-Interval", 24L) * 60 * 60 * 20);
+    /**
+     * @return the executor that timed update checks and update commands run on, off the main thread
+     */
+    public ScheduledExecutorService getUpdateScheduler() {
+        return scheduler;
+    }
+
+    public UpdateService getUpdateService() {
+        return updateService;
     }
 
     public static SpigotUpdater getPlugin() {
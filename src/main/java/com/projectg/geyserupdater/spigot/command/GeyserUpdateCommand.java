@@ -1,10 +1,13 @@
 package com.projectg.geyserupdater.spigot.command;
 
+import com.projectg.geyserupdater.common.UpdateResult;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
 import com.projectg.geyserupdater.common.util.Constants;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
-import com.projectg.geyserupdater.spigot.util.GeyserSpigotDownloader;
+import com.projectg.geyserupdater.common.util.ProgressMessages;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
+import com.projectg.geyserupdater.spigot.SpigotUpdater;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -14,6 +17,8 @@ import org.bukkit.entity.Player;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.RejectedExecutionException;
+
 public class GeyserUpdateCommand implements CommandExecutor {
 
     @Override
@@ -21,37 +26,62 @@ public class GeyserUpdateCommand implements CommandExecutor {
         UpdaterLogger logger = UpdaterLogger.getLogger();
 
         if (sender instanceof Player player) {
-            if (command.getName().equalsIgnoreCase("geyserupdate") && player.hasPermission("gupdater.geyserupdate")) {
-                sender.sendMessage(ChatColor.GOLD + "[GeyserUpdater] " + Constants.CHECK_START);
-                try {
-                    boolean isLatest = GeyserProperties.isLatestBuild();
-                    if (isLatest) {
-                        sender.sendMessage(ChatColor.GOLD + "[GeyserUpdater] " + Constants.LATEST);
-                    } else {
-                        sender.sendMessage(ChatColor.GOLD + "[GeyserUpdater] " + Constants.OUTDATED);
-                        GeyserSpigotDownloader.updateGeyser();
-                    }
-                } catch (Exception e) {
-                    sender.sendMessage(ChatColor.RED + "[GeyserUpdater] " + Constants.FAIL_CHECK);
-                    logger.error(Constants.FAIL_CHECK, e);
-                }
+            if (!command.getName().equalsIgnoreCase("geyserupdate") || !player.hasPermission("gupdater.geyserupdate")) {
+                return true;
             }
-        } else if (sender instanceof ConsoleCommandSender) {
-            logger.info(Constants.CHECK_START);
-            try {
-                boolean isLatest = GeyserProperties.isLatestBuild();
-                if (isLatest) {
-                    logger.info(Constants.LATEST);
-                } else {
-                    logger.info(Constants.OUTDATED);
-                    GeyserSpigotDownloader.updateGeyser();
+        } else if (!(sender instanceof ConsoleCommandSender)) {
+            return false;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("cancel")) {
+            boolean cancelled = SpigotUpdater.getPlugin().getUpdateService().cancel("Cancelled by " + sender.getName());
+            send(sender, ChatColor.GOLD, cancelled ? Constants.CANCEL_REQUESTED : Constants.NOTHING_TO_CANCEL);
+            return true;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("status")) {
+            send(sender, ChatColor.GOLD, SpigotUpdater.getPlugin().getUpdateService().describeStatus());
+            return true;
+        }
+
+        // Acknowledge now, everything else happens off the main thread
+        send(sender, ChatColor.GOLD, Constants.CHECK_START);
+        UpdateProgress progress = new ProgressMessages(message -> send(sender, ChatColor.GOLD, message));
+        try {
+            SpigotUpdater.getPlugin().getUpdateService().update(progress).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    if (sender instanceof Player) {
+                        send(sender, ChatColor.RED, Constants.FAIL_CHECK);
+                    }
+                    logger.error(Constants.FAIL_CHECK, throwable);
+                } else if (result.status() == UpdateResult.Status.UP_TO_DATE) {
+                    send(sender, ChatColor.GOLD, Constants.LATEST);
+                } else if (result.status() == UpdateResult.Status.IN_PROGRESS) {
+                    send(sender, ChatColor.GOLD, Constants.UPDATE_IN_PROGRESS);
+                } else if (result.status() == UpdateResult.Status.CANCELLED && sender instanceof Player) {
+                    send(sender, ChatColor.GOLD, Constants.UPDATE_CANCELLED);
                 }
-            } catch (Exception e) {
-                logger.error(Constants.FAIL_CHECK, e);
+            });
+        } catch (RejectedExecutionException e) {
+            // The plugin is being disabled
+            send(sender, ChatColor.RED, Constants.FAIL_CHECK);
+        }
+        return true;
+    }
+
+    /**
+     * Send a message to the sender of the command. Players are messaged on the main thread, the console is logged to directly.
+     */
+    private static void send(CommandSender sender, ChatColor color, String message) {
+        if (sender instanceof Player) {
+            if (Bukkit.isPrimaryThread()) {
+                sender.sendMessage(color + "[GeyserUpdater] " + message);
+            } else if (SpigotUpdater.getPlugin().isEnabled()) {
+                Bukkit.getScheduler().runTask(SpigotUpdater.getPlugin(), () -> sender.sendMessage(color + "[GeyserUpdater] " + message));
             }
+        } else if (color == ChatColor.RED) {
+            UpdaterLogger.getLogger().error(message);
         } else {
-            return false;
+            UpdaterLogger.getLogger().info(message);
         }
-        return true;
     }
-}
\ No newline at end of file
+}
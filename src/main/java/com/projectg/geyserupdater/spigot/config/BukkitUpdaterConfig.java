@@ -0,0 +1,28 @@
+package com.projectg.geyserupdater.spigot.config;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import org.bukkit.configuration.file.FileConfiguration;
+
+public final class BukkitUpdaterConfig implements UpdaterConfig {
+    private final FileConfiguration config;
+
+    public BukkitUpdaterConfig(FileConfiguration config) {
+        this.config = config;
+        UpdaterConfig.setConfig(this);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        return config.getBoolean(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def) {
+        return config.getLong(key, def);
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        return config.getString(key, def);
+    }
+}
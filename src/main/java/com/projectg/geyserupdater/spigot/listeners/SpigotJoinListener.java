@@ -1,20 +1,47 @@
 package com.projectg.geyserupdater.spigot.listeners;
 
-import com.projectg.geyserupdater.common.util.FileUtils;
+import com.projectg.geyserupdater.common.util.StagedUpdateNotifier;
+import com.projectg.geyserupdater.spigot.SpigotUpdater;
 
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 
-public class SpigotJoinListener implements Listener {
+import java.nio.file.Paths;
+
+public class SpigotJoinListener extends StagedUpdateNotifier implements Listener {
+
+    public SpigotJoinListener() {
+        super(Paths.get("plugins/update/Geyser-Spigot.jar"));
+    }
+
+    @Override
+    protected void register() {
+        onMainThread(() -> Bukkit.getServer().getPluginManager().registerEvents(this, SpigotUpdater.getPlugin()));
+    }
+
+    @Override
+    protected void unregister() {
+        onMainThread(() -> HandlerList.unregisterAll(this));
+    }
+
+    private static void onMainThread(Runnable runnable) {
+        // Changes are noticed on the watcher and download threads, but Bukkit's handler lists are not thread safe
+        if (Bukkit.isPrimaryThread()) {
+            runnable.run();
+        } else if (SpigotUpdater.getPlugin().isEnabled()) {
+            Bukkit.getScheduler().runTask(SpigotUpdater.getPlugin(), runnable);
+        }
+    }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        // We allow a cached result of maximum age 30 minutes to be used
-        if (FileUtils.checkFile("plugins/update/Geyser-Spigot.jar", true)) {
-            if (event.getPlayer().hasPermission("gupdater.geyserupdate")) {
-                event.getPlayer().sendMessage("[GeyserUpdater_CN] 已下载新的 Geyser 版本！请重启服务器以使用更新后的版本！");
-            }
+        Player player = event.getPlayer();
+        if (shouldNotify(player.getUniqueId()) && player.hasPermission("gupdater.geyserupdate") && markNotified(player.getUniqueId())) {
+            player.sendMessage("[GeyserUpdater_CN] 已下载新的 Geyser 版本！请重启服务器以使用更新后的版本！");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package com.projectg.geyserupdater.spigot.util;
+
+import com.projectg.geyserupdater.common.UpdateNotifier;
+import com.projectg.geyserupdater.common.UpdateScheduler;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+import com.projectg.geyserupdater.spigot.SpigotUpdater;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the update service on the wall clock scheduler of the plugin, and talks to players on the main thread
+ * because the Bukkit API isn't thread-safe.
+ */
+public class SpigotUpdateAdapter implements UpdateScheduler, UpdateNotifier {
+    private final SpigotUpdater plugin;
+
+    public SpigotUpdateAdapter(SpigotUpdater plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        plugin.getUpdateScheduler().execute(task);
+    }
+
+    @Override
+    public void runLater(Runnable task, long delay, TimeUnit unit) {
+        plugin.getUpdateScheduler().schedule(task, delay, unit);
+    }
+
+    @Override
+    public void notifyAdmins(String message, boolean error) {
+        ChatColor color = error ? ChatColor.RED : ChatColor.GREEN;
+        runSync(() -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (player.hasPermission("gupdater.geyserupdate")) {
+                    player.sendMessage(color + message);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void warnRestart() {
+        String message = ChatColor.translateAlternateColorCodes('&', plugin.getConfig().getString("Restart-Message-Players"));
+        runSync(() -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                player.sendMessage(message);
+            }
+        });
+    }
+
+    /**
+     * Attempt to restart the server
+     */
+    @Override
+    public void restart() {
+        runSync(() -> {
+            UpdaterLogger logger = UpdaterLogger.getLogger();
+            try {
+                Object spigotServer;
+                try {
+                    spigotServer = plugin.getServer().getClass().getMethod("spigot").invoke(plugin.getServer());
+                } catch (NoSuchMethodException e) {
+                    logger.error("您没有运行 Spigot（或其分支，如 Paper）！GeyserUpdater 无法自动重启您的服务器！ ", e);
+                    return;
+                }
+                Method restartMethod = spigotServer.getClass().getMethod("restart");
+                restartMethod.setAccessible(true);
+                restartMethod.invoke(spigotServer);
+            } catch (NoSuchMethodException e) {
+                logger.error("您的服务器版本太旧，无法自动重启！ ", e);
+            } catch (InvocationTargetException | IllegalAccessException e) {
+                logger.error("重启服务器失败！ ", e);
+            }
+        });
+    }
+
+    @Override
+    public boolean isServerEmpty() {
+        return Bukkit.getOnlinePlayers().isEmpty();
+    }
+
+    private void runSync(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.projectg.geyserupdater.velocity;
 
+import com.projectg.geyserupdater.common.UpdateService;
 import com.projectg.geyserupdater.common.logger.UpdaterLogger;
-import com.projectg.geyserupdater.common.util.FileUtils;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
+import com.projectg.geyserupdater.common.metrics.PrometheusExporter;
+import com.projectg.geyserupdater.common.metrics.UpdaterJmx;
+import com.projectg.geyserupdater.common.util.Bandwidth;
+import com.projectg.geyserupdater.common.util.JarSwapper;
 import com.projectg.geyserupdater.common.util.ScriptCreator;
+import com.projectg.geyserupdater.common.util.ServerPlatform;
+import com.projectg.geyserupdater.common.util.StagedArtifacts;
 import com.projectg.geyserupdater.velocity.command.GeyserUpdateCommand;
+import com.projectg.geyserupdater.velocity.config.TomlUpdaterConfig;
 import com.projectg.geyserupdater.velocity.listeners.VelocityJoinListener;
 import com.projectg.geyserupdater.velocity.logger.Slf4jUpdaterLogger;
-import com.projectg.geyserupdater.velocity.util.GeyserVelocityDownloader;
+import com.projectg.geyserupdater.velocity.util.VelocityUpdateAdapter;
 import com.projectg.geyserupdater.velocity.util.bstats.Metrics;
 
 import com.google.inject.Inject;
@@ -27,8 +33,6 @@ import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -46,6 +50,7 @@ public class VelocityUpdater {
     private final Path dataDirectory;
     private final Toml config;
     private final Metrics.Factory metricsFactory;
+    private UpdateService updateService;
 
     @Inject
     public VelocityUpdater(ProxyServer server, Logger baseLogger, @DataDirectory final Path folder, Metrics.Factory metricsFactory) {
@@ -61,6 +66,9 @@ public class VelocityUpdater {
     public void onProxyInitialization(ProxyInitializeEvent event) {
         metricsFactory.make(this, 10673);
         new Slf4jUpdaterLogger(baseLogger);
+        new TomlUpdaterConfig(config);
+        // Finish or roll back a jar swap that was interrupted by a crash
+        JarSwapper.recover();
 
         if (getConfig().getBoolean("Enable-Debug", false)) {
             UpdaterLogger.getLogger().info("尝试启用调试日志记录。 ");
@@ -70,10 +78,19 @@ public class VelocityUpdater {
         checkConfigVersion();
         // todo: meta version checking
 
+        VelocityUpdateAdapter adapter = new VelocityUpdateAdapter(this);
+        updateService = new UpdateService(ServerPlatform.VELOCITY, Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar"),
+                Paths.get("plugins/Geyser-Velocity.jar"), adapter, adapter);
+        // Expose the updater's state and timings to JMX tools, and to Prometheus if enabled
+        UpdaterJmx.register(updateService);
+        PrometheusExporter.start(updateService);
+
         // Register our only command
         server.getCommandManager().register("geyserupdate", new GeyserUpdateCommand());
-        // Player alert if a restart is required when they join
-        server.getEventManager().register(this, new VelocityJoinListener());
+        // Track the staged Geyser jar, so that checking it is free
+        StagedArtifacts.watch(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar"));
+        // Player alert if a restart is required when they join, registered only while an update is staged
+        new VelocityJoinListener().start();
 
         // Make startup script if enabled
         if (config.getBoolean("Auto-Script-Generating")) {
@@ -90,8 +107,9 @@ public class VelocityUpdater {
         // Check if downloaded Geyser file exists periodically
         server.getScheduler()
                 .buildTask(this, () -> {
-                    FileUtils.checkFile("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar", true);
-                    UpdaterLogger.getLogger().info("已下载新的 Geyser 版本！请重启 Velocity 以使用更新后的版本！");
+                    if (StagedArtifacts.isStaged(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar"))) {
+                        UpdaterLogger.getLogger().info("已下载新的 Geyser 版本！请重启 Velocity 以使用更新后的版本！");
+                    }
                 })
                 .delay(30L, TimeUnit.MINUTES)
                 .repeat(12L, TimeUnit.HOURS)
@@ -122,6 +140,10 @@ public class VelocityUpdater {
         } catch (IOException e) {
             UpdaterLogger.getLogger().error("尝试用新版本替换当前的 Geyser jar 时发生错误！放弃尝试。 ", e);
         }
+        UpdaterJmx.unregister();
+        PrometheusExporter.stop();
+        StagedArtifacts.close();
+        Bandwidth.save();
     }
 
     /**
@@ -157,34 +179,23 @@ public class VelocityUpdater {
      */
     public void checkConfigVersion() {
         //Change version number only when editing config.yml!
-        if (getConfig().getLong("Config-Version", 0L).compareTo(2L) != 0) {
+        if (getConfig().getLong("Config-Version", 0L).compareTo(3L) != 0) {
             UpdaterLogger.getLogger().warn("您的 config.yml 文件已过时。请删除它，并让系统生成一个新的 config.yml 文件！ ");
         }
     }
 
     /**
-     * Check for a newer version of Geyser every 24hrs
+     * Check for a newer version of Geyser about every Auto-Update-Interval hours, see {@link com.projectg.geyserupdater.common.PollingPolicy}
      */
     public void scheduleAutoUpdate() {
         UpdaterLogger.getLogger().debug("尝试启用自动更新");
-        // Checking for the build numbers of current build.
-        // todo: build this in different way so that we don't repeat it if the Auto-Update-Interval is zero or -1 or something
-        server.getScheduler()
-                .buildTask(this, () -> {
-                    UpdaterLogger.getLogger().debug("检查是否存在新的 Geyser 版本。 ");
-                    try {
-                        boolean isLatest = GeyserProperties.isLatestBuild();
-                        if (!isLatest) {
-                            UpdaterLogger.getLogger().info("有新的 Geyser 版本可用！正在尝试下载最新版本... ");
-                            GeyserVelocityDownloader.updateGeyser();
-                        }
-                    } catch (Exception e) {
-                        UpdaterLogger.getLogger().error("检查 Geyser 更新失败！我们无法连接到 Geyser 构建服务器，或者您的本地分支在服务器上不存在。 ", e);
-                    }
-                })
-                .delay(1L, TimeUnit.MINUTES)
-                .repeat(getConfig().getLong("Auto-Update-Interval", 24L), TimeUnit.HOURS)
-                .schedule();
+        long interval = getConfig().getLong("Auto-Update-Interval", 24L);
+        if (interval <= 0) {
+            UpdaterLogger.getLogger().warn("Auto-Update-Interval 必须大于 0！已禁用自动更新。 ");
+            return;
+        }
+        // The update service schedules each check itself, with jitter and backoff. Auto-Update-Interval is in hours.
+        updateService.startAutoUpdate(TimeUnit.HOURS.toMillis(interval));
     }
 
     /**
@@ -194,23 +205,17 @@ public class VelocityUpdater {
      * @throws IOException if there was an IO failure
      */
     public void moveGeyserJar() throws IOException {
-        // Moving Geyser Jar to Plugins folder "Overwriting".
-        File fileToCopy = new File("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar");
-        if (fileToCopy.exists()) {
-            UpdaterLogger.getLogger().debug("将新的 Geyser jar 移动到 plugins 文件夹。 ");
-            FileInputStream input = new FileInputStream(fileToCopy);
-            File newFile = new File("plugins/Geyser-Velocity.jar");
-            FileOutputStream output = new FileOutputStream(newFile);
-            byte[] buf = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = input.read(buf)) > 0) {
-                output.write(buf, 0, bytesRead);
+        Path target = Paths.get("plugins/Geyser-Velocity.jar");
+        if (!JarSwapper.isPrepared(target)) {
+            Path staged = Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar");
+            if (!Files.isRegularFile(staged)) {
+                UpdaterLogger.getLogger().debug("未找到可移动到 plugins 文件夹的新 Geyser jar。 ");
+                return;
             }
-            input.close();
-            output.close();
-        } else {
-            UpdaterLogger.getLogger().debug("未找到新的 Geyser jar 文件以复制到 plugins 文件夹。 ");
+            JarSwapper.prepare(staged, target);
         }
+        UpdaterLogger.getLogger().debug("将新的 Geyser jar 移动到 plugins 文件夹……");
+        JarSwapper.apply(target, ServerPlatform.VELOCITY, getConfig().getBoolean("Backup-Geyser-Jar", false));
     }
 
     /**
@@ -222,6 +227,11 @@ public class VelocityUpdater {
         UpdaterLogger.getLogger().debug("如果 BuildUpdate 文件夹中存在 Geyser jar，则删除它。 ");
         Path file = Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar");
         Files.deleteIfExists(file);
+        StagedArtifacts.refresh(file);
+    }
+
+    public UpdateService getUpdateService() {
+        return updateService;
     }
 
     public static VelocityUpdater getPlugin() {
@@ -1,11 +1,15 @@
 package com.projectg.geyserupdater.velocity.command;
 
+import com.projectg.geyserupdater.common.UpdateResult;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
 import com.projectg.geyserupdater.common.util.Constants;
-import com.projectg.geyserupdater.common.util.GeyserProperties;
-import com.projectg.geyserupdater.velocity.util.GeyserVelocityDownloader;
+import com.projectg.geyserupdater.common.util.ProgressMessages;
+import com.projectg.geyserupdater.common.util.UpdateProgress;
+import com.projectg.geyserupdater.velocity.VelocityUpdater;
 
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.RawCommand;
+import com.velocitypowered.api.proxy.Player;
 
 import net.kyori.adventure.text.Component;
 import org.jetbrains.annotations.NotNull;
@@ -16,20 +20,35 @@ public class GeyserUpdateCommand implements RawCommand {
     public void execute(final @NotNull Invocation invocation) {
         CommandSource source = invocation.source();
 
-        try {
-            source.sendMessage(Component.text(Constants.CHECK_START));
-            boolean isLatest = GeyserProperties.isLatestBuild();
-            if (isLatest) {
+        String argument = invocation.arguments().trim();
+        if (argument.equalsIgnoreCase("cancel")) {
+            String name = source instanceof Player player ? player.getUsername() : "console";
+            boolean cancelled = VelocityUpdater.getPlugin().getUpdateService().cancel("Cancelled by " + name);
+            source.sendMessage(Component.text(cancelled ? Constants.CANCEL_REQUESTED : Constants.NOTHING_TO_CANCEL));
+            return;
+        }
+        if (argument.equalsIgnoreCase("status")) {
+            source.sendMessage(Component.text(VelocityUpdater.getPlugin().getUpdateService().describeStatus()));
+            return;
+        }
+
+        // Acknowledge now, and keep the network calls off the command executor
+        source.sendMessage(Component.text(Constants.CHECK_START));
+        UpdateProgress progress = new ProgressMessages(message -> source.sendMessage(Component.text(message)));
+        VelocityUpdater.getPlugin().getUpdateService().update(progress).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                source.sendMessage(Component.text(Constants.FAIL_CHECK));
+                UpdaterLogger.getLogger().error(Constants.FAIL_CHECK, throwable);
+            } else if (result.status() == UpdateResult.Status.UP_TO_DATE) {
                 source.sendMessage(Component.text(Constants.LATEST));
-            } else {
-                source.sendMessage(Component.text(Constants.OUTDATED));
-                GeyserVelocityDownloader.updateGeyser();
+            } else if (result.status() == UpdateResult.Status.IN_PROGRESS) {
+                source.sendMessage(Component.text(Constants.UPDATE_IN_PROGRESS));
+            } else if (result.status() == UpdateResult.Status.CANCELLED) {
+                source.sendMessage(Component.text(Constants.UPDATE_CANCELLED));
             }
-        } catch (Exception e) {
-            source.sendMessage(Component.text(Constants.FAIL_CHECK));
-            e.printStackTrace();
-        }
+        });
     }
+
     @Override
     public boolean hasPermission(final @NotNull Invocation invocation) {
         return invocation.source().hasPermission("gupdater.geyserupdate");
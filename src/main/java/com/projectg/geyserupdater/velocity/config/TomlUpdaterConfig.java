@@ -0,0 +1,28 @@
+package com.projectg.geyserupdater.velocity.config;
+
+import com.moandjiezana.toml.Toml;
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+
+public final class TomlUpdaterConfig implements UpdaterConfig {
+    private final Toml config;
+
+    public TomlUpdaterConfig(Toml config) {
+        this.config = config;
+        UpdaterConfig.setConfig(this);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        return config.getBoolean(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def) {
+        return config.getLong(key, def);
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        return config.getString(key, def);
+    }
+}
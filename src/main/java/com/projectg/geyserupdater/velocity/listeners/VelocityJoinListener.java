@@ -1,21 +1,37 @@
 package com.projectg.geyserupdater.velocity.listeners;
 
-import com.projectg.geyserupdater.common.util.FileUtils;
+import com.projectg.geyserupdater.common.util.StagedUpdateNotifier;
+import com.projectg.geyserupdater.velocity.VelocityUpdater;
 
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.proxy.Player;
 
 import net.kyori.adventure.text.Component;
 
-public class VelocityJoinListener {
+import java.nio.file.Paths;
+
+public class VelocityJoinListener extends StagedUpdateNotifier {
+
+    public VelocityJoinListener() {
+        super(Paths.get("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar"));
+    }
+
+    @Override
+    protected void register() {
+        VelocityUpdater.getPlugin().getProxyServer().getEventManager().register(VelocityUpdater.getPlugin(), this);
+    }
+
+    @Override
+    protected void unregister() {
+        VelocityUpdater.getPlugin().getProxyServer().getEventManager().unregisterListener(VelocityUpdater.getPlugin(), this);
+    }
 
     @Subscribe
     public void onPostLogin(PostLoginEvent event) {
-        // We allow a cached result of maximum age 30 minutes to be used
-        if (FileUtils.checkFile("plugins/GeyserUpdater/BuildUpdate/Geyser-Velocity.jar",true)) {
-            if (event.getPlayer().hasPermission("gupdater.geyserupdate")) {
-                event.getPlayer().sendMessage(Component.text("[GeyserUpdater]已下载新的 Geyser 版本！请重启 Velocity 以使用更新后的版本！ "));
-            }
+        Player player = event.getPlayer();
+        if (shouldNotify(player.getUniqueId()) && player.hasPermission("gupdater.geyserupdate") && markNotified(player.getUniqueId())) {
+            player.sendMessage(Component.text("[GeyserUpdater]已下载新的 Geyser 版本！请重启 Velocity 以使用更新后的版本！ "));
         }
     }
 }
@@ -0,0 +1,63 @@
+package com.projectg.geyserupdater.velocity.util;
+
+import com.projectg.geyserupdater.common.UpdateNotifier;
+import com.projectg.geyserupdater.common.UpdateScheduler;
+import com.projectg.geyserupdater.velocity.VelocityUpdater;
+
+import com.velocitypowered.api.proxy.Player;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the update service on the Velocity scheduler. All tasks on Velocity are async.
+ */
+public class VelocityUpdateAdapter implements UpdateScheduler, UpdateNotifier {
+    private final VelocityUpdater plugin;
+
+    public VelocityUpdateAdapter(VelocityUpdater plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        plugin.getProxyServer().getScheduler().buildTask(plugin, task).schedule();
+    }
+
+    @Override
+    public void runLater(Runnable task, long delay, TimeUnit unit) {
+        plugin.getProxyServer().getScheduler().buildTask(plugin, task).delay(delay, unit).schedule();
+    }
+
+    @Override
+    public void notifyAdmins(String message, boolean error) {
+        NamedTextColor color = error ? NamedTextColor.DARK_RED : NamedTextColor.GREEN;
+        for (Player player : plugin.getProxyServer().getAllPlayers()) {
+            if (player.hasPermission("gupdater.geyserupdate")) {
+                player.sendMessage(Component.text(message).color(color));
+            }
+        }
+    }
+
+    @Override
+    public void warnRestart() {
+        for (Player player : plugin.getProxyServer().getAllPlayers()) {
+            player.sendMessage(Component.text(plugin.getConfig().getString("Restart-Message-Players")));
+        }
+    }
+
+    /**
+     * Velocity can only shut down, the restart script brings it back up
+     */
+    @Override
+    public void restart() {
+        plugin.getProxyServer().shutdown();
+    }
+
+    @Override
+    public boolean isServerEmpty() {
+        return plugin.getProxyServer().getPlayerCount() == 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.projectg.geyserupdater.common.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Building a new jar from the installed one with range requests against a stub server.
+ */
+class DeltaUpdaterTest {
+    private static final int ENTRIES = 20;
+    private static final int ENTRY_SIZE = 64 * 1024;
+    /**
+     * 2020-01-01, so that the entries get no extended timestamp.
+     */
+    private static final long ENTRY_TIME = 1577836800000L;
+
+    @TempDir
+    Path directory;
+
+    private Path installed;
+    private byte[] newJar;
+    private String newSha256;
+    private StubServer server;
+    private Path output;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestConfig.install().set("Delta-Updates", true);
+        installed = directory.resolve("Geyser-Spigot.jar");
+        Files.write(installed, jar(false));
+        newJar = jar(true);
+        Path source = directory.resolve("new.jar");
+        Files.write(source, newJar);
+        newSha256 = FileUtils.sha256(source);
+        server = new StubServer(newJar);
+        HttpTransport.setShared(new HttpTransport(server.baseUrl(), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(60)));
+        output = directory.resolve("Geyser-Spigot.jar.delta");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        HttpTransport.setShared(null);
+    }
+
+    @Test
+    void downloadsOnlyTheEntriesThatChanged() throws IOException {
+        assertTrue(DeltaUpdater.apply(server.url(), installed, output, newSha256, UpdateProgress.NONE, CancellationToken.NONE));
+
+        assertArrayEquals(newJar, Files.readAllBytes(output));
+        // The central directory and two changed entries, out of twenty
+        assertTrue(server.bytesServed() < newJar.length / 3, "downloaded %d of %d bytes".formatted(server.bytesServed(), newJar.length));
+    }
+
+    @Test
+    void fallsBackWhenTheResultDoesNotMatchItsHash() {
+        assertFalse(DeltaUpdater.apply(server.url(), installed, output, "0".repeat(64), UpdateProgress.NONE, CancellationToken.NONE));
+    }
+
+    @Test
+    void fallsBackWhenTheInstalledJarIsNotAZip() throws IOException {
+        byte[] garbage = new byte[ENTRY_SIZE];
+        new Random(1).nextBytes(garbage);
+        Files.write(installed, garbage);
+
+        assertFalse(DeltaUpdater.apply(server.url(), installed, output, newSha256, UpdateProgress.NONE, CancellationToken.NONE));
+    }
+
+    @Test
+    void fallsBackWhenCancelled() {
+        CancellationToken token = new CancellationToken();
+        token.cancel("test");
+
+        assertFalse(DeltaUpdater.apply(server.url(), installed, output, newSha256, UpdateProgress.NONE, token));
+    }
+
+    /**
+     * Build a jar of stored and deflated entries. The new build changes two entries and adds one.
+     */
+    private static byte[] jar(boolean newBuild) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                boolean changed = newBuild && (i == 3 || i == 12);
+                byte[] data = new byte[ENTRY_SIZE];
+                new Random(changed ? 1000 + i : i).nextBytes(data);
+                ZipEntry entry = new ZipEntry("org/geysermc/geyser/Class%d.class".formatted(i));
+                entry.setTime(ENTRY_TIME);
+                if (i % 2 == 0) {
+                    // Stored entries have their sizes in the local header, deflated ones in a data descriptor
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                zip.write(data);
+                zip.closeEntry();
+            }
+            if (newBuild) {
+                ZipEntry entry = new ZipEntry("org/geysermc/geyser/Added.class");
+                entry.setTime(ENTRY_TIME);
+                zip.putNextEntry(entry);
+                zip.write("added in the new build".getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,154 @@
+package com.projectg.geyserupdater.common.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resuming downloads through the {@link DownloadJournal} when the server drops connections at random offsets.
+ */
+class FileUtilsDownloadTest {
+    private static final int SIZE = 1024 * 1024;
+    /**
+     * {@code FileUtils.downloadFile} makes one attempt and up to three retries.
+     */
+    private static final int ATTEMPTS = 4;
+
+    @TempDir
+    Path directory;
+
+    private byte[] content;
+    private String sha256;
+    private StubServer server;
+    private Path output;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestConfig.install();
+        content = new byte[SIZE];
+        new Random(SIZE).nextBytes(content);
+        Path source = directory.resolve("source.jar");
+        Files.write(source, content);
+        sha256 = FileUtils.sha256(source);
+        server = new StubServer(content);
+        HttpTransport.setShared(new HttpTransport(server.baseUrl(), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(60)));
+        output = directory.resolve("out").resolve("Geyser-Spigot.jar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        HttpTransport.setShared(null);
+    }
+
+    @Test
+    void resumesAfterConnectionsAreCutAtRandomOffsets() throws IOException {
+        for (long seed = 0; seed < 5; seed++) {
+            Files.deleteIfExists(output);
+            List<Long> cuts = randomOffsets(new Random(seed), ATTEMPTS - 1);
+            int before = server.ranges().size();
+            server.cutAt(cuts);
+
+            FileUtils.downloadFile(server.url(), output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE);
+
+            assertArrayEquals(content, Files.readAllBytes(output), "seed " + seed);
+            List<String> ranges = server.ranges().subList(before, server.ranges().size());
+            assertEquals(ATTEMPTS, ranges.size(), "requests with seed " + seed);
+            assertNull(ranges.get(0));
+            for (int i = 0; i < cuts.size(); i++) {
+                // Every retry continues exactly where the previous connection was cut
+                assertEquals("bytes=" + cuts.get(i) + "-", ranges.get(i + 1), "seed " + seed);
+            }
+            assertFalse(Files.exists(journalFile()), "the journal is deleted once the download is complete");
+        }
+    }
+
+    @Test
+    void continuesFromTheJournalInTheNextAttempt() throws IOException {
+        List<Long> cuts = randomOffsets(new Random(42), ATTEMPTS);
+        server.cutAt(cuts);
+
+        assertThrows(IOException.class, () -> FileUtils.downloadFile(server.url(), output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE));
+        assertFalse(Files.exists(output));
+        DownloadJournal journal = DownloadJournal.load(journalFile());
+        assertNotNull(journal, "the journal is kept after the retries are used up");
+        long lastCut = cuts.get(cuts.size() - 1);
+        assertEquals(lastCut, journal.bytesDone());
+        assertTrue(journal.isResumable());
+
+        FileUtils.downloadFile(server.url(), output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE);
+
+        assertArrayEquals(content, Files.readAllBytes(output));
+        List<String> ranges = server.ranges();
+        assertEquals("bytes=" + lastCut + "-", ranges.get(ranges.size() - 1));
+        assertEquals(SIZE, server.bytesServed(), "no byte is downloaded twice");
+        assertFalse(Files.exists(journalFile()));
+    }
+
+    @Test
+    void restartsWhenTheServerSendsAnotherRange() throws IOException {
+        server.cutAt(List.of((long) SIZE / 2));
+        server.sendWrongContentRange();
+
+        FileUtils.downloadFile(server.url(), output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE);
+
+        assertArrayEquals(content, Files.readAllBytes(output));
+        assertEquals(Arrays.asList(null, "bytes=" + SIZE / 2 + "-", null), server.ranges());
+    }
+
+    @Test
+    void ignoresAJournalWithoutAUrl() throws IOException {
+        Files.createDirectories(output.getParent());
+        Files.write(output.resolveSibling(output.getFileName() + ".part"), Arrays.copyOf(content, SIZE / 2));
+        Files.writeString(journalFile(), "{\"bytesDone\":%d,\"validator\":\"x\"}".formatted(SIZE / 2));
+        assertNull(DownloadJournal.load(journalFile()));
+
+        FileUtils.downloadFile(server.url(), output.toString(), sha256, 1, UpdateProgress.NONE, CancellationToken.NONE);
+
+        assertArrayEquals(content, Files.readAllBytes(output));
+        assertEquals(Arrays.asList((String) null), server.ranges());
+    }
+
+    @Test
+    void rejectsAFileThatDoesNotMatchItsHash() {
+        String wrong = "0".repeat(64);
+
+        assertThrows(IOException.class, () -> FileUtils.downloadFile(server.url(), output.toString(), wrong, 1, UpdateProgress.NONE, CancellationToken.NONE));
+        assertFalse(Files.exists(output));
+        assertFalse(Files.exists(journalFile()));
+    }
+
+    private Path journalFile() {
+        return output.resolveSibling(output.getFileName() + ".part.json");
+    }
+
+    /**
+     * @return distinct offsets within the file in ascending order
+     */
+    private static List<Long> randomOffsets(Random random, int count) {
+        TreeSet<Long> offsets = new TreeSet<>();
+        while (offsets.size() < count) {
+            offsets.add(1 + (long) random.nextInt(SIZE - 1));
+        }
+        return new ArrayList<>(offsets);
+    }
+}
@@ -0,0 +1,132 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.json_schema.EndpointResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Conditional requests for the metadata of the latest build, answered from the {@link MetadataCache} when unchanged.
+ */
+class GeyserDownloadApiTest {
+    private static final String ETAG = "\"build-42\"";
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 10:00:00 GMT";
+    private static final String BODY = "{\"project_id\":\"geyser\",\"version\":\"2.4.0\",\"build\":42,"
+            + "\"downloads\":{\"spigot\":{\"name\":\"Geyser-Spigot.jar\",\"sha256\":\"%s\"}}}".formatted("a".repeat(64));
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+    private final List<String> ifModifiedSince = new CopyOnWriteArrayList<>();
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestConfig.install();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Constants.GEYSER_LATEST_MASTER_ENDPOINT, this::serve);
+        server.start();
+        HttpTransport.setShared(new HttpTransport("http://127.0.0.1:" + server.getAddress().getPort(),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(60)));
+        cacheFile = directory.resolve("cache").resolve("latest-build.json");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        HttpTransport.setShared(null);
+    }
+
+    @Test
+    void answersAnUnchangedBuildFromTheCache() throws Exception {
+        GeyserDownloadApi api = new GeyserDownloadApi(new MetadataCache(cacheFile));
+
+        EndpointResponse first = api.data();
+        EndpointResponse second = api.data();
+
+        assertEquals(42, first.build());
+        assertEquals("a".repeat(64), first.downloads().spigot().sha256());
+        // The 304 has no body, so the response cached from the 200 is returned as is
+        assertSame(first, second);
+        assertEquals(Arrays.asList(null, ETAG), ifNoneMatch);
+        assertEquals(Arrays.asList(null, LAST_MODIFIED), ifModifiedSince);
+    }
+
+    @Test
+    void readsTheCacheFromDiskAfterARestart() throws Exception {
+        new GeyserDownloadApi(new MetadataCache(cacheFile)).data();
+
+        EndpointResponse cached = new GeyserDownloadApi(new MetadataCache(cacheFile)).data();
+
+        assertEquals(42, cached.build());
+        assertEquals("2.4.0", cached.version());
+        assertEquals(Arrays.asList(null, ETAG), ifNoneMatch);
+    }
+
+    @Test
+    void fallsBackToAFullRequestWhenTheCacheIsCorrupt() throws Exception {
+        Files.createDirectories(cacheFile.getParent());
+        Files.writeString(cacheFile, "{\"etag\":\"%s\",\"body\":\"{\\\"build\\\": [}\"}".formatted(ETAG.replace("\"", "\\\"")));
+
+        EndpointResponse latest = new GeyserDownloadApi(new MetadataCache(cacheFile)).data();
+
+        assertEquals(42, latest.build());
+        // The server confirmed the cached build, but its body could not be read, so it is requested again without validators
+        assertEquals(Arrays.asList(ETAG, null), ifNoneMatch);
+        assertEquals(ETAG, new MetadataCache(cacheFile).etag(), "the cache is replaced by the new response");
+    }
+
+    @Test
+    void sendsNoValidatorsWhenTheCacheIsMissing() throws Exception {
+        new GeyserDownloadApi(new MetadataCache(cacheFile)).data();
+        Files.delete(cacheFile);
+
+        EndpointResponse latest = new GeyserDownloadApi(new MetadataCache(cacheFile)).data();
+
+        assertEquals(42, latest.build());
+        assertEquals(Arrays.asList(null, null), ifNoneMatch);
+        assertEquals(Arrays.asList(null, null), ifModifiedSince);
+        assertTrue(Files.isRegularFile(cacheFile), "the cache is written again");
+    }
+
+    /**
+     * Answer like the download API: a 304 if the client's ETag is the current one, otherwise the build with its validators.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(etag);
+            ifModifiedSince.add(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.projectg.geyserupdater.common.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cached state of staged files while many threads read and refresh it, like player joins during an update.
+ */
+class StagedArtifactsTest {
+    private static final int THREADS = 16;
+
+    @TempDir
+    Path directory;
+
+    private Path staged;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        TestConfig.install();
+        staged = directory.resolve("staging").resolve("Geyser-Spigot.jar");
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        StagedArtifacts.close();
+    }
+
+    @Test
+    void concurrentFirstReadsAgreeAndWatchTheFile() throws Exception {
+        Files.createDirectories(staged.getParent());
+        Files.write(staged, new byte[]{1});
+
+        for (boolean state : runTogether(() -> StagedArtifacts.isStaged(staged))) {
+            assertTrue(state);
+        }
+
+        Files.delete(staged);
+        awaitState(false);
+    }
+
+    @Test
+    void concurrentRefreshesFireOncePerChange() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        assertFalse(StagedArtifacts.watch(staged));
+        StagedArtifacts.addListener(staged, fired::incrementAndGet);
+
+        Files.write(staged, new byte[]{1});
+        runTogether(() -> {
+            StagedArtifacts.refresh(staged);
+            return null;
+        });
+        assertTrue(StagedArtifacts.isStaged(staged));
+        // The watcher may notice the change too, but only the first thread to apply it fires the listeners
+        assertEquals(1, fired.get());
+
+        Files.delete(staged);
+        runTogether(() -> {
+            StagedArtifacts.refresh(staged);
+            return null;
+        });
+        assertFalse(StagedArtifacts.isStaged(staged));
+        assertEquals(2, fired.get());
+    }
+
+    @Test
+    void readersSeeTheLastStateWhileTheFileChanges() throws Exception {
+        StagedArtifacts.watch(staged);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch reading = new CountDownLatch(THREADS - 1);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < THREADS - 1; i++) {
+            readers.add(executor.submit(() -> {
+                reading.countDown();
+                while (writing.get()) {
+                    StagedArtifacts.isStaged(staged);
+                }
+                return null;
+            }));
+        }
+        Future<?> writer = executor.submit(() -> {
+            try {
+                reading.await();
+                for (int i = 0; i < 200; i++) {
+                    if (i % 2 == 0) {
+                        Files.write(staged, new byte[]{1});
+                    } else {
+                        Files.delete(staged);
+                    }
+                    StagedArtifacts.refresh(staged);
+                }
+                Files.write(staged, new byte[]{1});
+                StagedArtifacts.refresh(staged);
+            } finally {
+                writing.set(false);
+            }
+            return null;
+        });
+
+        writer.get(30, TimeUnit.SECONDS);
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        // Neither the refreshes nor the watcher, which may still be processing old events, can leave a stale state
+        awaitState(true);
+        Thread.sleep(200);
+        assertTrue(StagedArtifacts.isStaged(staged));
+    }
+
+    /**
+     * Run a task on every thread of the pool at the same moment.
+     *
+     * @return the results of the task
+     */
+    private <T> List<T> runTogether(Callable<T> task) throws InterruptedException, ExecutionException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the watch service to notice a change, which can take a few seconds where it polls.
+     */
+    private void awaitState(boolean expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (StagedArtifacts.isStaged(staged) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, StagedArtifacts.isStaged(staged), "state of " + staged + ", exists: " + Files.exists(staged));
+    }
+}
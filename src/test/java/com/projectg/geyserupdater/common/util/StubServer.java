@@ -0,0 +1,140 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local download server that serves one file with range requests. It can drop connections part way through a
+ * response and answer with a range other than the one requested, like a flaky mirror.
+ */
+final class StubServer implements AutoCloseable {
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] content;
+    private final String etag;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final Queue<Long> cuts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private volatile boolean wrongContentRange;
+
+    StubServer(byte[] content) throws IOException {
+        this.content = content;
+        this.etag = "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+    /**
+     * @return the base url of the server, to create an {@link HttpTransport} with
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the url of the file
+     */
+    String url() {
+        return baseUrl() + "/Geyser-Spigot.jar";
+    }
+
+    /**
+     * Drop the connections of the next GET requests once the file has been sent up to the given offsets, one offset per request.
+     */
+    void cutAt(Collection<Long> offsets) {
+        cuts.addAll(offsets);
+    }
+
+    /**
+     * Answer range requests with the whole file as a 206, as if the server ignored the requested offset.
+     */
+    void sendWrongContentRange() {
+        wrongContentRange = true;
+    }
+
+    /**
+     * @return the Range header of every GET request so far, null for requests without one
+     */
+    List<String> ranges() {
+        return new ArrayList<>(ranges);
+    }
+
+    /**
+     * @return the number of bytes of the file sent in response bodies so far
+     */
+    long bytesServed() {
+        return bytesServed.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (!head) {
+                ranges.add(range);
+            }
+            int first = 0;
+            int last = content.length - 1;
+            int status = 200;
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", 2);
+                if (!wrongContentRange) {
+                    first = Integer.parseInt(bounds[0]);
+                    if (!bounds[1].isEmpty()) {
+                        last = Math.min(last, Integer.parseInt(bounds[1]));
+                    }
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes %d-%d/%d".formatted(first, last, content.length));
+            }
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", etag);
+            int length = last + 1 - first;
+            if (head) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+
+            Long cut = cuts.poll();
+            int end = cut == null ? last + 1 : (int) Math.max(first, Math.min(last + 1, cut));
+            exchange.sendResponseHeaders(status, length);
+            OutputStream body = exchange.getResponseBody();
+            for (int position = first; position < end; position += CHUNK_SIZE) {
+                int count = Math.min(CHUNK_SIZE, end - position);
+                body.write(content, position, count);
+                bytesServed.addAndGet(count);
+            }
+            body.flush();
+            if (cut != null) {
+                // The server closes the connection when a handler fails, before the announced length was sent
+                throw new IOException("Connection cut at byte " + end);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.projectg.geyserupdater.common.util;
+
+import com.projectg.geyserupdater.common.config.UpdaterConfig;
+import com.projectg.geyserupdater.common.logger.JavaUtilUpdaterLogger;
+import com.projectg.geyserupdater.common.logger.UpdaterLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A config for tests that returns the default of every option that was not set.
+ */
+final class TestConfig implements UpdaterConfig {
+    private final Map<String, Object> options = new HashMap<>();
+
+    /**
+     * Install a new config and the logger, as a plugin does on enable.
+     *
+     * @return the config
+     */
+    static TestConfig install() {
+        if (UpdaterLogger.getLogger() == null) {
+            new JavaUtilUpdaterLogger(Logger.getLogger("GeyserUpdater"));
+        }
+        TestConfig config = new TestConfig();
+        UpdaterConfig.setConfig(config);
+        return config;
+    }
+
+    TestConfig set(String key, Object value) {
+        options.put(key, value);
+        return this;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        return (Boolean) options.getOrDefault(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def) {
+        return ((Number) options.getOrDefault(key, def)).longValue();
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        return (String) options.getOrDefault(key, def);
+    }
+}